@@ -7,6 +7,7 @@ import io.zaaim.arindexer.controller.IndexController;
 import io.zaaim.arindexer.controller.SearchController;
 import io.zaaim.arindexer.controller.WebController;
 import io.zaaim.arindexer.service.DocumentIndexService;
+import io.zaaim.arindexer.service.IndexRegistry;
 import io.zaaim.arindexer.storage.SecureFileSystemStorageService;
 import io.zaaim.arindexer.storage.StorageService;
 import io.zaaim.arindexer.util.Constants;
@@ -35,6 +36,9 @@ public class Main {
 
         Routing routing = routingBuilder.build();
 
+        // documents added since the last flush only live in memory
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> IndexRegistry.getInstance().flushAll()));
+
         WebServer webServer = WebServer.builder().port(9001).addMediaSupport(JacksonSupport.create()).addRouting(routing).build();
 
         webServer.start().thenAccept(ws -> System.out.println("Web server is up! http://localhost:" + ws.port())).exceptionally(t -> {
@@ -4,10 +4,19 @@ import io.helidon.common.http.MediaType;
 import io.helidon.webserver.Routing;
 import io.helidon.webserver.ServerRequest;
 import io.helidon.webserver.ServerResponse;
-import io.zaaim.arindexer.model.Index;
+import io.zaaim.arindexer.service.IndexRegistry;
+import io.zaaim.arindexer.service.IndexingJob;
+import io.zaaim.arindexer.service.IndexingJobs;
+import io.zaaim.arindexer.service.IndexingProgress;
+import io.zaaim.arindexer.service.Indexer;
+import io.zaaim.arindexer.service.SegmentedIndex;
 import io.zaaim.arindexer.service.impl.ArabicIndexer;
-import io.zaaim.arindexer.stemmer.ArabicStemmerKhoja;
+import io.zaaim.arindexer.service.impl.IncrementalIndexer;
+import io.zaaim.arindexer.service.impl.SpimiIndexer;
+import io.zaaim.arindexer.storage.DurableFiles;
+import io.zaaim.arindexer.storage.IndexFormat;
 import io.zaaim.arindexer.util.Constants;
+import io.zaaim.arindexer.util.TextProcessor;
 
 import java.io.IOException;
 import java.nio.file.Files;
@@ -26,9 +35,14 @@ public class IndexController {
         routing
                 .get("/greet", this::greet)
                 .get("/startIndexing", this::startIndexing)
+                .get("/jobs", this::getJobs)
+                .get("/jobs/{id}", this::getJob)
+                .delete("/jobs/{id}", this::cancelJob)
                 .get("/stem/{word}", this::stem)
                 .post("/{index}/save", this::save)
+                .post("/{index}/refresh", this::refresh)
                 .post("/document/add", this::addDocument)
+                .delete("/document", this::deleteDocument)
                 .get("/documents", this::getDocuments);
     }
 
@@ -36,21 +50,114 @@ public class IndexController {
         res.send("Hello World !");
     }
 
+    // Submits a reindex of the default index and returns its job at once; GET /jobs/{id} reports its progress
     private void startIndexing(ServerRequest req, ServerResponse res) {
-        try {
-            Index index = new ArabicIndexer().createIndex(Constants.STORAGE_DIR);
+        // only files changed since the last run are analyzed; full=true streams a complete rebuild to disk
+        // that replaces every segment of the default index in one step
+        boolean full = "true".equalsIgnoreCase(req.queryParams().first("full").orElse("false"));
+        // the XML export needs the whole index on the heap, so it is only written on request
+        boolean exportXml = "xml".equalsIgnoreCase(req.queryParams().first("export").orElse(""));
 
-            if (!Files.exists(Constants.INDEXES_DIR)) Files.createDirectories(Constants.INDEXES_DIR);
-            String xmlIndexFileName = "index-" + System.currentTimeMillis() + ".xml";
-            String serIndexFileName = "index-" + System.currentTimeMillis() + ".ser";
+        String key = Constants.DEFAULT_INDEX + (full ? " full" : "") + (exportXml ? " xml" : "");
+        IndexingJob job = IndexingJobs.getInstance().submit(key, progress -> reindex(full, exportXml, progress));
+        res.status(202);
+        res.headers().contentType(MediaType.parse("application/json; charset=UTF-8"));
+        res.send(jobJson(job));
+    }
 
-            index.saveToFileAsXml(Constants.INDEXES_DIR.resolve(xmlIndexFileName));
-            index.saveIndexTotoFile(Constants.INDEXES_DIR.resolve(serIndexFileName));
+    private static String reindex(boolean full, boolean exportXml, IndexingProgress progress) throws IOException {
+        if (!Files.exists(Constants.INDEXES_DIR)) Files.createDirectories(Constants.INDEXES_DIR);
+        Indexer indexer = new SpimiIndexer(Constants.INDEXER_MEMORY_BYTES, progress);
+        SegmentedIndex segmented = IndexRegistry.getInstance().getOrCreate(Constants.DEFAULT_INDEX);
+        IncrementalIndexer.Result result = new IncrementalIndexer(indexer, progress)
+                .reindex(Constants.STORAGE_DIR, segmented, full);
 
-            res.send("Indexing started. Index saved to: " + Constants.INDEXES_DIR.resolve(serIndexFileName));
-        } catch (IOException e) {
-            res.status(500).send("Error starting indexing: " + e.getMessage());
+        if (exportXml) {
+            progress.setPhase("exporting");
+            String indexName = "index-" + System.currentTimeMillis();
+            Path xmlIndexPath = Constants.INDEXES_DIR.resolve(indexName + IndexFormat.XML.extension());
+            // written aside and renamed, so the export is never picked up half-written
+            Path temporary = DurableFiles.temporaryFor(xmlIndexPath);
+            try {
+                // reads the corpus on the job's progress, so cancelling the job also stops the export
+                new ArabicIndexer(progress).createIndex(Constants.STORAGE_DIR).saveToFileAsXml(temporary);
+                progress.checkCancelled();
+                DurableFiles.publish(temporary, xmlIndexPath);
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
         }
+
+        return "Index saved to: " + segmented.getDirectory()
+                + (result.rebuilt() ? " (rebuilt, " + result.added() + " documents)"
+                : " (" + result.added() + " added, " + result.changed() + " changed, "
+                + result.removed() + " removed, " + result.unchanged() + " unchanged)");
+    }
+
+    private void getJobs(ServerRequest request, ServerResponse response) {
+        response.headers().contentType(MediaType.parse("application/json; charset=UTF-8"));
+        response.send(IndexingJobs.getInstance().list().stream()
+                .map(IndexController::jobJson)
+                .collect(Collectors.joining(", ", "[", "]")));
+    }
+
+    private void getJob(ServerRequest request, ServerResponse response) {
+        IndexingJob job = findJob(request, response);
+        if (job != null) {
+            response.headers().contentType(MediaType.parse("application/json; charset=UTF-8"));
+            response.send(jobJson(job));
+        }
+    }
+
+    private void cancelJob(ServerRequest request, ServerResponse response) {
+        IndexingJob job = findJob(request, response);
+        if (job != null) {
+            if (!job.cancel()) {
+                response.status(409);
+            }
+            response.headers().contentType(MediaType.parse("application/json; charset=UTF-8"));
+            response.send(jobJson(job));
+        }
+    }
+
+    private static IndexingJob findJob(ServerRequest request, ServerResponse response) {
+        String id = request.path().param("id");
+        IndexingJob job = null;
+        try {
+            job = IndexingJobs.getInstance().get(Long.parseLong(id));
+        } catch (NumberFormatException e) {
+            // answered as unknown below
+        }
+        if (job == null) {
+            response.status(404).send("{\"error\": \"Unknown indexing job: " + id + "\"}");
+        }
+        return job;
+    }
+
+    private static String jobJson(IndexingJob job) {
+        IndexingProgress progress = job.getProgress();
+        StringBuilder json = new StringBuilder("{");
+        json.append("\"id\": ").append(job.getId())
+                .append(", \"state\": \"").append(job.getState()).append('"')
+                .append(", \"phase\": \"").append(progress.getPhase()).append('"')
+                .append(", \"filesRead\": ").append(progress.getFilesRead())
+                .append(", \"filesTotal\": ").append(progress.getFilesTotal())
+                .append(", \"bytesRead\": ").append(progress.getBytesRead())
+                .append(", \"tokensProcessed\": ").append(progress.getTokensProcessed())
+                .append(", \"bytesPerSecond\": ").append(Math.round(progress.getBytesPerSecond()))
+                .append(", \"elapsedMillis\": ").append(progress.getElapsedMillis())
+                .append(", \"etaMillis\": ").append(job.getState().isDone() ? 0 : progress.getEtaMillis());
+        if (job.getResult() != null) {
+            json.append(", \"result\": \"").append(escapeJson(job.getResult())).append('"');
+        }
+        if (job.getError() != null) {
+            json.append(", \"error\": \"").append(escapeJson(job.getError())).append('"');
+        }
+        return json.append('}').toString();
+    }
+
+    private static String escapeJson(String text) {
+        return text.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
     }
 
     private void stem(ServerRequest request, ServerResponse response) {
@@ -59,8 +166,8 @@ public class IndexController {
             response.send("Missing path parameter 'word'.");
             return;
         }
-        ArabicStemmerKhoja stemmer = new ArabicStemmerKhoja();
-        String stemmed = stemmer.stem(word);
+        // the shared stemmer, whose lexicons are loaded once and whose cache indexing has warmed
+        String stemmed = TextProcessor.getStemmer().stem(word);
         response.send("Stemmed word: " + stemmed);
     }
 
@@ -100,8 +207,16 @@ public class IndexController {
                                 StandardOpenOption.CREATE,
                                 StandardOpenOption.TRUNCATE_EXISTING);
 
+                        // the default index covers every stored file, so re-saving one updates just that document;
+                        // before the first /startIndexing there is none, and the next reindex picks the file up
+                        String documentName = Constants.STORAGE_DIR.relativize(target).toString();
+                        SegmentedIndex segmented = IndexRegistry.getInstance().find(Constants.DEFAULT_INDEX);
+                        if (segmented != null) {
+                            segmented.addDocuments(Map.of(documentName, TextProcessor.processDocument(text)));
+                        }
+
                         response.send("Saved to: " + target);
-                    } catch (IOException e) {
+                    } catch (IOException | RuntimeException e) {
                         response.send("Error saving file: " + e.getMessage());
                     }
                 })
@@ -119,6 +234,21 @@ public class IndexController {
         }
 
         String safeFileName = Paths.get(fileName).getFileName().toString();
+        String indexName = request.queryParams().first("index").orElse(Constants.DEFAULT_INDEX);
+        // the file goes into the stored corpus, which only the default index is built from
+        if (!indexName.equals(Constants.DEFAULT_INDEX)) {
+            response.status(400).send("{\"error\": \"Documents can only be added to the default index\"}");
+            return;
+        }
+        // indexes are only created by /startIndexing, never as a side effect of adding a document
+        SegmentedIndex index = IndexRegistry.getInstance().find(indexName);
+        if (index == null) {
+            response.status(404).send("{\"error\": \"Unknown segmented index: " + indexName
+                    + ", run /startIndexing first\"}");
+            return;
+        }
+        // refresh=true makes the document searchable before responding instead of at the next scheduled refresh
+        boolean refresh = Boolean.parseBoolean(request.queryParams().first("refresh").orElse("false"));
 
         request.content().as(String.class)
                 .thenAccept(content -> {
@@ -135,9 +265,16 @@ public class IndexController {
                                 StandardOpenOption.CREATE,
                                 StandardOpenOption.TRUNCATE_EXISTING);
 
+                        // analyzed now and buffered; searchable after the next refresh, without a full rebuild
+                        String documentName = Constants.STORAGE_DIR.relativize(target).toString();
+                        index.addDocuments(Map.of(documentName, TextProcessor.processDocument(content)));
+                        if (refresh) {
+                            index.refresh();
+                        }
+
                         response.headers().contentType(MediaType.parse("application/json; charset=UTF-8"));
                         response.send("{\"message\": \"Document added successfully\", \"path\": \"" + target.getFileName() + "\"}");
-                    } catch (IOException e) {
+                    } catch (IOException | RuntimeException e) {
                         response.status(500).send("{\"error\": \"Error saving document: " + e.getMessage() + "\"}");
                     }
                 })
@@ -147,6 +284,68 @@ public class IndexController {
                 });
     }
 
+    private void deleteDocument(ServerRequest request, ServerResponse response) {
+        String name = request.queryParams().first("name").orElse(null);
+        if (name == null || name.isBlank()) {
+            response.status(400).send("{\"error\": \"Missing query parameter 'name'\"}");
+            return;
+        }
+        String indexName = request.queryParams().first("index").orElse(Constants.DEFAULT_INDEX);
+        boolean refresh = Boolean.parseBoolean(request.queryParams().first("refresh").orElse("false"));
+
+        Path target = Constants.STORAGE_DIR.resolve(name).normalize();
+        if (!target.startsWith(Constants.STORAGE_DIR) || target.equals(Constants.STORAGE_DIR)) {
+            response.status(400).send("{\"error\": \"Invalid file name\"}");
+            return;
+        }
+        SegmentedIndex index;
+        try {
+            index = IndexRegistry.getInstance().find(indexName);
+        } catch (IllegalArgumentException e) {
+            response.status(400).send("{\"error\": \"Invalid index name\"}");
+            return;
+        }
+        if (index == null) {
+            response.status(404).send("{\"error\": \"Unknown segmented index: " + indexName + "\"}");
+            return;
+        }
+        try {
+            // removed from storage as well, or the next full rebuild would bring it back
+            boolean existed = Files.deleteIfExists(target);
+            index.deleteDocuments(List.of(Constants.STORAGE_DIR.relativize(target).toString()));
+            if (refresh) {
+                index.refresh();
+            }
+            response.headers().contentType(MediaType.parse("application/json; charset=UTF-8"));
+            response.send("{\"message\": \"Document deleted\", \"fileExisted\": " + existed + "}");
+        } catch (IOException | RuntimeException e) {
+            response.status(500).send("{\"error\": \"Error deleting document: " + e.getMessage() + "\"}");
+        }
+    }
+
+    private void refresh(ServerRequest request, ServerResponse response) {
+        String index = request.path().param("index");
+        SegmentedIndex segmented;
+        try {
+            segmented = IndexRegistry.getInstance().find(index);
+        } catch (IllegalArgumentException e) {
+            response.status(400).send("{\"error\": \"Invalid index name\"}");
+            return;
+        }
+        if (segmented == null) {
+            response.status(404).send("{\"error\": \"Unknown segmented index: " + index + "\"}");
+            return;
+        }
+        try {
+            int refreshed = segmented.refresh();
+            response.headers().contentType(MediaType.parse("application/json; charset=UTF-8"));
+            response.send("{\"refreshed\": " + refreshed + ", \"documents\": " + segmented.getDocumentCount()
+                    + ", \"segments\": " + segmented.getSegmentCount() + ", \"version\": " + segmented.getVersion() + "}");
+        } catch (RuntimeException e) {
+            response.status(500).send("{\"error\": \"Error refreshing index: " + e.getMessage() + "\"}");
+        }
+    }
+
     private void getDocuments(ServerRequest request, ServerResponse response) {
         try {
             if (!Files.exists(Constants.STORAGE_DIR)) {
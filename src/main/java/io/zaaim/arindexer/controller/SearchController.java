@@ -5,16 +5,19 @@ import io.helidon.webserver.Routing;
 import io.helidon.webserver.ServerRequest;
 import io.helidon.webserver.ServerResponse;
 import io.zaaim.arindexer.dto.response.SearchResponse;
+import io.zaaim.arindexer.dto.response.SearchResult;
+import io.zaaim.arindexer.model.ScoredDocument;
+import io.zaaim.arindexer.model.SearchHits;
 import io.zaaim.arindexer.service.DocumentIndexService;
+import io.zaaim.arindexer.service.IndexRegistry;
+import io.zaaim.arindexer.service.SearchMode;
 import io.zaaim.arindexer.service.impl.SearchImpl;
 import io.zaaim.arindexer.util.Constants;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.AbstractMap;
 import java.util.List;
-import java.util.Map;
 import java.util.stream.Collectors;
 
 public class SearchController {
@@ -36,7 +39,8 @@ public class SearchController {
             List<String> indexes;
             try (var stream = Files.list(Constants.INDEXES_DIR)) {
                 indexes = stream
-                        .filter(Files::isRegularFile)
+                        // directories are segmented indexes, searched by their name
+                        .filter(path -> Files.isRegularFile(path) || Files.isDirectory(path))
                         .map(path -> path.getFileName().toString())
                         .collect(Collectors.toList());
             }
@@ -63,13 +67,13 @@ public class SearchController {
         }
         String index = request.path().param("index");
 
-        Map<String, Float> rawResults = indexService.search(query, index, limit);
+        List<ScoredDocument> rawResults = indexService.search(query, index, limit);
 
-        Map<String, Float> hydrated = rawResults.entrySet().stream()
+        List<SearchResult> hydrated = rawResults.stream()
                 .limit(limit)
-                .collect(java.util.stream.Collectors.toMap(
-                        e -> indexService.fetchContent(e.getKey()),
-                        Map.Entry::getValue));
+                .map(result -> new SearchResult(result.document(),
+                        indexService.fetchContent(result.document()), result.score()))
+                .collect(Collectors.toList());
 
         SearchResponse searchResponse = new SearchResponse(query, index, limit, hydrated);
         response.headers().contentType(io.helidon.common.http.MediaType.parse("application/json; charset=UTF-8"));
@@ -82,24 +86,41 @@ public class SearchController {
             return;
         }
 
+        try {
+            IndexRegistry.validateName(index);
+        } catch (IllegalArgumentException e) {
+            response.status(400).send("Invalid index");
+            return;
+        }
+
         String query = request.queryParams().first("q").orElse("");
         int limit = Integer.parseInt(request.queryParams().first("limit").orElse("5"));
+        SearchMode mode;
+        try {
+            // mode=exhaustive|wand|block_max_wand, to compare latency of the evaluation strategies
+            mode = request.queryParams().first("mode").map(SearchMode::of).orElse(Constants.SEARCH_MODE);
+        } catch (IllegalArgumentException e) {
+            response.status(400).send("Invalid mode");
+            return;
+        }
 
         SearchImpl searchService = new SearchImpl();
-        Map<String, Float> results = searchService.search(query, index, limit);
+        SearchHits hits = searchService.search(query, index, limit, mode);
 
-        results = results.entrySet().stream().map(entry -> {
+        List<SearchResult> results = hits.documents().stream().map(result -> {
             try {
-                return new AbstractMap.SimpleEntry<>(
-                        Files.readString(Path.of(Constants.STORAGE_DIR.resolve(entry.getKey()).toUri())),
-                        entry.getValue()
+                return new SearchResult(
+                        result.document(),
+                        Files.readString(Path.of(Constants.STORAGE_DIR.resolve(result.document()).toUri())),
+                        result.score()
                 );
             } catch (IOException e) {
                 throw new RuntimeException(e);
             }
-        }).limit(limit).collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+        }).limit(limit).collect(Collectors.toList());
 
-        SearchResponse searchResponse = new SearchResponse(query, index, limit,results);
+        SearchResponse searchResponse = new SearchResponse(query, index, limit, results,
+                hits.postingsScored(), hits.postingsSkipped());
 
         response.headers().contentType(MediaType.parse("application/json; charset=UTF-8"));
         response.send(searchResponse);
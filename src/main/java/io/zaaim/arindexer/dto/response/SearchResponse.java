@@ -1,6 +1,11 @@
 package io.zaaim.arindexer.dto.response;
 
-import java.util.Map;
+import java.util.List;
 
-public record SearchResponse(String query, String index, int limit, Map<String, Float> results) {
+public record SearchResponse(String query, String index, int limit, List<SearchResult> results,
+                             long postingsScored, long postingsSkipped) {
+
+    public SearchResponse(String query, String index, int limit, List<SearchResult> results) {
+        this(query, index, limit, results, 0, 0);
+    }
 }
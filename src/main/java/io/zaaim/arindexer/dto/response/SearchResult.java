@@ -0,0 +1,4 @@
+package io.zaaim.arindexer.dto.response;
+
+public record SearchResult(String documentId, String content, float score) {
+}
@@ -0,0 +1,98 @@
+package io.zaaim.arindexer.model;
+
+import io.zaaim.arindexer.storage.PostingsCodec;
+
+import java.util.Arrays;
+
+// Postings cursor over the parallel arrays of a heap-resident Index
+class ArrayPostingsIterator implements PostingsIterator {
+
+    private final int[] documents;
+    private final float[] weights;
+    // one bound per run of PostingsCodec.BLOCK_SIZE postings, as in the binary format
+    private final float[] blockMaxImpacts;
+    private int position = -1;
+    private int docId = -1;
+    private int block;
+
+    ArrayPostingsIterator(int[] documents, float[] weights, float[] blockMaxImpacts) {
+        this.documents = documents;
+        this.weights = weights;
+        this.blockMaxImpacts = blockMaxImpacts;
+    }
+
+    @Override
+    public int docId() {
+        return docId;
+    }
+
+    @Override
+    public int nextDoc() {
+        position++;
+        docId = position < documents.length ? documents[position] : NO_MORE_DOCS;
+        return docId;
+    }
+
+    @Override
+    public int advance(int target) {
+        if (docId >= target) {
+            return docId;
+        }
+        int from = position + 1;
+        if (from >= documents.length) {
+            position = documents.length;
+            return docId = NO_MORE_DOCS;
+        }
+        position = search(from, target);
+        docId = position < documents.length ? documents[position] : NO_MORE_DOCS;
+        return docId;
+    }
+
+    @Override
+    public float weight() {
+        return weights[position];
+    }
+
+    @Override
+    public int cost() {
+        return documents.length;
+    }
+
+    @Override
+    public int shallowAdvance(int target) {
+        int from = Math.max(position, 0);
+        if (from < documents.length) {
+            int end = Math.min((from / PostingsCodec.BLOCK_SIZE + 1) * PostingsCodec.BLOCK_SIZE, documents.length) - 1;
+            if (documents[end] >= target) {
+                block = from / PostingsCodec.BLOCK_SIZE;
+                return documents[end];
+            }
+        }
+        int next = from < documents.length ? search(from, target) : from;
+        if (next >= documents.length) {
+            block = blockMaxImpacts.length;
+            return NO_MORE_DOCS;
+        }
+        block = next / PostingsCodec.BLOCK_SIZE;
+        return documents[Math.min((block + 1) * PostingsCodec.BLOCK_SIZE, documents.length) - 1];
+    }
+
+    @Override
+    public float blockMaxImpact() {
+        return block < blockMaxImpacts.length ? blockMaxImpacts[block] : 0.0f;
+    }
+
+    // Index of the first doc id >= target at or after from; gallops first, as targets are usually close
+    private int search(int from, int target) {
+        if (documents[from] >= target) {
+            return from;
+        }
+        int bound = 1;
+        while (from + bound < documents.length && documents[from + bound] < target) {
+            bound <<= 1;
+        }
+        int found = Arrays.binarySearch(documents, from + (bound >>> 1),
+                Math.min(from + bound + 1, documents.length), target);
+        return found >= 0 ? found : -found - 1;
+    }
+}
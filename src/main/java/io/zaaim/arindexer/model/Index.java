@@ -1,29 +1,216 @@
 package io.zaaim.arindexer.model;
 
+import io.zaaim.arindexer.storage.BinaryIndexFormat;
 import io.zaaim.arindexer.storage.IndexFormat;
 import io.zaaim.arindexer.storage.IndexStorageService;
+import io.zaaim.arindexer.storage.PostingsCodec;
+import io.zaaim.arindexer.util.TfIdfCalculator;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
-public class Index implements Serializable {
-    private static final long serialVersionUID = 1L;
+public class Index implements Segment, Serializable {
+    private static final long serialVersionUID = 7L;
+    // a length is looked for up to this frequency of a document's least frequent term
+    private static final int MAX_RECOVERED_FREQUENCY = 1000;
+    // otherwise weights are kept to about 6 digits
+    private static final int FALLBACK_LENGTH = 1 << 20;
 
-    private Map<String, Map<String, Float>> indexMap;
+    // doc id -> relative path of the document, the only place names are kept
+    private String[] documents;
+    // term id -> stemmed term
+    private String[] terms;
+    // postings per term id: ascending doc ids and the term's frequency in each document divided by
+    // the document length; idf is left out so segments built at different times can be searched together
+    private int[][] postingDocuments;
+    private float[][] postingWeights;
+    // idf the document norms were computed with, from the collection statistics at build time
+    private float[] inverseDocumentFrequency;
+    // TF-IDF vector norm per document
+    private float[] documentNorms;
+    // number of terms per document, which turns weights back into raw frequencies
+    private int[] documentLengths;
+    // per term: largest weight / document norm over its postings; times the query's idf, this bounds a term's score
+    private float[] maxImpacts;
+    // the same bound per block of PostingsCodec.BLOCK_SIZE postings, for block-max pruning
+    private float[][] blockMaxImpacts;
+    private transient Map<String, Integer> termIds;
     private transient IndexStorageService storage; // not serialized
-    private Path indexPath;
+    private transient Path indexPath;
 
-    public Index(Map<String, Map<String, Float>> indexMap) {
-        this.indexMap = new HashMap<>();
-        for (Map.Entry<String, Map<String, Float>> entry : indexMap.entrySet()) {
-            this.indexMap.put(entry.getKey(), new HashMap<>(entry.getValue()));
+    // Builds the inverted index from per-document normalized term frequencies; norms use the given idf,
+    // falling back to the idf within these documents for terms it does not cover, and the document lengths
+    // are recovered from the weights
+    public Index(Map<String, Map<String, Float>> documentVectors, Map<String, Float> inverseDocumentFrequency) {
+        this(documentVectors, inverseDocumentFrequency, null, Map.of());
+    }
+
+    public Index(Map<String, Map<String, Float>> documentVectors) {
+        this(documentVectors, null, null, Map.of());
+    }
+
+    // Builds the inverted index from raw term frequencies, keeping the document lengths they were normalized by
+    public static Index fromTermFrequencies(Map<String, Map<String, Integer>> termFrequencies,
+                                            Map<String, Float> inverseDocumentFrequency) {
+        Map<String, Integer> lengths = new HashMap<>();
+        termFrequencies.forEach((document, frequencies) ->
+                lengths.put(document, frequencies.values().stream().mapToInt(Integer::intValue).sum()));
+        return new Index(TfIdfCalculator.calculateTf(termFrequencies), inverseDocumentFrequency, null, lengths);
+    }
+
+    private Index(Map<String, Map<String, Float>> documentVectors,
+                  Map<String, Float> idf,
+                  Map<String, Float> norms,
+                  Map<String, Integer> lengths) {
+        documents = documentVectors.keySet().toArray(new String[0]);
+        Arrays.sort(documents);
+
+        // document frequency per term decides the size of each posting list
+        Map<String, Integer> documentFrequency = new HashMap<>();
+        for (Map<String, Float> vector : documentVectors.values()) {
+            for (String term : vector.keySet()) {
+                documentFrequency.merge(term, 1, Integer::sum);
+            }
+        }
+        terms = documentFrequency.keySet().toArray(new String[0]);
+        Arrays.sort(terms);
+        buildTermIds();
+
+        postingDocuments = new int[terms.length][];
+        postingWeights = new float[terms.length][];
+        for (int termId = 0; termId < terms.length; termId++) {
+            int df = documentFrequency.get(terms[termId]);
+            postingDocuments[termId] = new int[df];
+            postingWeights[termId] = new float[df];
+        }
+
+        inverseDocumentFrequency = new float[terms.length];
+        for (int termId = 0; termId < terms.length; termId++) {
+            Float termIdf = idf == null ? null : idf.get(terms[termId]);
+            inverseDocumentFrequency[termId] = termIdf != null
+                    ? termIdf
+                    : TfIdfCalculator.calculateIdf(documents.length, postingDocuments[termId].length);
+        }
+
+        // documents are visited in id order, so every posting list comes out sorted
+        int[] filled = new int[terms.length];
+        documentNorms = new float[documents.length];
+        documentLengths = new int[documents.length];
+        for (int docId = 0; docId < documents.length; docId++) {
+            Map<String, Float> vector = documentVectors.get(documents[docId]);
+            Integer length = lengths.get(documents[docId]);
+            if (length == null) {
+                length = recoverLength(vector.values());
+                vector = withLength(vector, length);
+            }
+            documentLengths[docId] = length;
+            for (Map.Entry<String, Float> entry : vector.entrySet()) {
+                int termId = termIds.get(entry.getKey());
+                int slot = filled[termId]++;
+                postingDocuments[termId][slot] = docId;
+                postingWeights[termId][slot] = entry.getValue();
+            }
+            Float norm = norms == null ? null : norms.get(documents[docId]);
+            documentNorms[docId] = norm != null
+                    ? norm
+                    : TfIdfCalculator.calculateNorm(vector, term -> inverseDocumentFrequency[termIds.get(term)]);
+        }
+        computeMaxImpacts();
+    }
+
+    // The document-major index kept only the weights frequency / length; this is the smallest length that turns
+    // every weight back into a whole frequency (a weight of 0, left by a term in every document, stands for 0)
+    private static int recoverLength(Collection<Float> weights) {
+        float smallest = Float.MAX_VALUE;
+        for (float weight : weights) {
+            if (weight > 0.0f) {
+                smallest = Math.min(smallest, weight);
+            }
+        }
+        if (smallest == Float.MAX_VALUE) {
+            return weights.size();
+        }
+        // the smallest weight belongs to the least frequent term, so its frequency picks the length
+        for (int frequency = 1; frequency <= MAX_RECOVERED_FREQUENCY; frequency++) {
+            int length = Math.round(frequency / smallest);
+            if (length > 0 && isWholeFrequencies(weights, length)) {
+                return length;
+            }
+        }
+        return FALLBACK_LENGTH;
+    }
+
+    private static boolean isWholeFrequencies(Collection<Float> weights, int length) {
+        long total = 0;
+        for (float weight : weights) {
+            double frequency = (double) weight * length;
+            long rounded = Math.round(frequency);
+            // the weights went through a float division by the idf and back
+            if (Math.abs(frequency - rounded) > Math.max(1e-3, frequency * 1e-5)) {
+                return false;
+            }
+            total += rounded;
+        }
+        return total <= length;
+    }
+
+    private static Map<String, Float> withLength(Map<String, Float> vector, int length) {
+        Map<String, Float> weights = new HashMap<>(vector.size() * 2);
+        vector.forEach((term, weight) ->
+                weights.put(term, PostingsCodec.weight(Math.round(weight * length), length)));
+        return weights;
+    }
+
+    // Wraps already inverted arrays, as read back from a binary index file
+    public Index(String[] documents, float[] documentNorms, int[] documentLengths,
+                 String[] terms, float[] inverseDocumentFrequency,
+                 int[][] postingDocuments, float[][] postingWeights) {
+        this.documents = documents;
+        this.documentNorms = documentNorms;
+        this.documentLengths = documentLengths;
+        this.terms = terms;
+        this.inverseDocumentFrequency = inverseDocumentFrequency;
+        this.postingDocuments = postingDocuments;
+        this.postingWeights = postingWeights;
+        buildTermIds();
+        computeMaxImpacts();
+    }
+
+    private void computeMaxImpacts() {
+        maxImpacts = new float[terms.length];
+        blockMaxImpacts = new float[terms.length][];
+        for (int termId = 0; termId < terms.length; termId++) {
+            int[] docs = postingDocuments[termId];
+            blockMaxImpacts[termId] = new float[PostingsCodec.blockCount(docs.length)];
+            for (int i = 0; i < docs.length; i++) {
+                float impact = TfIdfCalculator.calculateImpact(postingWeights[termId][i], documentNorms[docs[i]]);
+                int block = i / PostingsCodec.BLOCK_SIZE;
+                blockMaxImpacts[termId][block] = Math.max(blockMaxImpacts[termId][block], impact);
+                maxImpacts[termId] = Math.max(maxImpacts[termId], impact);
+            }
+        }
+    }
+
+    private void buildTermIds() {
+        termIds = new HashMap<>(terms.length * 2);
+        for (int termId = 0; termId < terms.length; termId++) {
+            termIds.put(terms[termId], termId);
         }
     }
 
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        buildTermIds();
+    }
+
     public Index withStorage(IndexStorageService storage) {
         this.storage = storage;
         return this;
@@ -33,10 +220,10 @@ public class Index implements Serializable {
     public void saveToStorage(String id, IndexFormat format) {
         ensureStorage();
         Path path = storage.resolveIndex(id, format.extension());
-        if (format == IndexFormat.XML) {
-            saveToFileAsXml(path);
-        } else {
-            saveIndexToFile(path);
+        switch (format) {
+            case XML -> saveToFileAsXml(path);
+            case BINARY, MAPPED -> saveToFileAsBinary(path);
+            default -> saveIndexToFile(path);
         }
         this.indexPath = path;
     }
@@ -47,7 +234,7 @@ public class Index implements Serializable {
         if (!Files.exists(path)) {
             throw new IllegalStateException("Index not found: " + path);
         }
-        Index idx = (format == IndexFormat.XML) ? loadIndexFromXml(path) : loadIndexFromFile(path);
+        Index idx = load(path, format);
         idx.indexPath = path;
         idx.storage = storage;
         return idx;
@@ -56,17 +243,111 @@ public class Index implements Serializable {
     // Legacy: load from arbitrary file path (kept for compatibility)
     public static Index fromFile(Path indexPath) {
         if (indexPath != null && indexPath.toFile().exists()) {
-            Index index = indexPath.toString().endsWith(".xml")
-                    ? loadIndexFromXml(indexPath)
-                    : loadIndexFromFile(indexPath);
+            IndexFormat format = IndexFormat.of(indexPath);
+            Index index = load(indexPath, format == null ? IndexFormat.SERIALIZED : format);
             index.indexPath = indexPath;
             return index;
         }
         throw new IllegalStateException("Index path is not set or file does not exist");
     }
 
-    public Map<String, Map<String, Float>> getIndexMap() {
-        return Collections.unmodifiableMap(indexMap);
+    private static Index load(Path path, IndexFormat format) {
+        return switch (format) {
+            case XML -> loadIndexFromXml(path);
+            case BINARY, MAPPED -> loadIndexFromBinary(path);
+            default -> loadIndexFromFile(path);
+        };
+    }
+
+    @Override
+    public int getTermId(String term) {
+        Integer termId = termIds.get(term);
+        return termId == null ? -1 : termId;
+    }
+
+    @Override
+    public int getTermCount() {
+        return terms.length;
+    }
+
+    @Override
+    public String getTerm(int termId) {
+        return terms[termId];
+    }
+
+    public int[] getPostingDocuments(int termId) {
+        return postingDocuments[termId];
+    }
+
+    public float[] getPostingWeights(int termId) {
+        return postingWeights[termId];
+    }
+
+    @Override
+    public PostingsIterator postings(int termId) {
+        return new ArrayPostingsIterator(postingDocuments[termId], postingWeights[termId], blockMaxImpacts[termId]);
+    }
+
+    @Override
+    public int getDocumentFrequency(int termId) {
+        return postingDocuments[termId].length;
+    }
+
+    @Override
+    public float getInverseDocumentFrequency(int termId) {
+        return inverseDocumentFrequency[termId];
+    }
+
+    @Override
+    public float getMaxImpact(int termId) {
+        return maxImpacts[termId];
+    }
+
+    @Override
+    public int getDocumentCount() {
+        return documents.length;
+    }
+
+    @Override
+    public String getDocumentName(int docId) {
+        return documents[docId];
+    }
+
+    @Override
+    public int getDocumentId(String name) {
+        int docId = Arrays.binarySearch(documents, name);
+        return docId >= 0 ? docId : -1;
+    }
+
+    @Override
+    public float getDocumentNorm(int docId) {
+        return documentNorms[docId];
+    }
+
+    @Override
+    public int getDocumentLength(int docId) {
+        return documentLengths[docId];
+    }
+
+    public int[] getDocumentLengths() {
+        return documentLengths;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return documents.length == 0;
+    }
+
+    @Override
+    public long estimatedSizeBytes() {
+        long bytes = 0;
+        for (int termId = 0; termId < terms.length; termId++) {
+            bytes += 96 + 2L * terms[termId].length() + 8L * postingDocuments[termId].length;
+        }
+        for (String document : documents) {
+            bytes += 52 + 2L * document.length();
+        }
+        return bytes;
     }
 
     public Path getIndexPath() {
@@ -89,27 +370,73 @@ public class Index implements Serializable {
     }
 
     public static Index loadIndexFromFile(Path path) {
-        try (var ois = new ObjectInputStream(new FileInputStream(path.toFile()))) {
-            return (Index) ois.readObject();
+        try (var ois = new LegacyIndexInputStream(new FileInputStream(path.toFile()))) {
+            Object index = ois.readObject();
+            if (index instanceof LegacyIndexInputStream.DocumentMajorIndex legacy) {
+                Map<String, Map<String, Float>> vectors = new HashMap<>();
+                legacy.documentVectors().forEach((document, vector) -> vectors.put(document, new HashMap<>(vector)));
+                // the weights are TF-IDF over these same documents, so the idf they carry is derived again
+                removeInverseDocumentFrequency(vectors, Map.of());
+                return new Index(vectors);
+            }
+            return (Index) index;
         } catch (IOException | ClassNotFoundException e) {
             throw new RuntimeException("Failed to load index from file: " + path, e);
         }
     }
 
+    public void saveToFileAsBinary(Path path) {
+        try {
+            BinaryIndexFormat.write(this, path);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to save binary index: " + path, e);
+        }
+    }
+
+    public static Index loadIndexFromBinary(Path path) {
+        try {
+            return BinaryIndexFormat.read(path);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to load binary index: " + path, e);
+        }
+    }
+
+    // Exact: raw term frequencies and document lengths
     public void saveToFileAsXml(Path path) {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(path.toFile()))) {
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
             writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
-            writer.write("<index>\n");
-            writer.write("  <entries>\n");
-            for (Map.Entry<String, Map<String, Float>> entry : indexMap.entrySet()) {
-                writer.write("    <entry key=\"" + escapeXml(entry.getKey()) + "\">\n");
-                for (Map.Entry<String, Float> vector : entry.getValue().entrySet()) {
-                    writer.write("      <vector term=\"" + escapeXml(vector.getKey()) +
-                            "\" score=\"" + vector.getValue() + "\"/>\n");
+            writer.write("<index documents=\"" + documents.length + "\" weights=\"tf\">\n");
+            writer.write("  <documents>\n");
+            for (int docId = 0; docId < documents.length; docId++) {
+                writer.write("    <document name=\"" + escapeXml(documents[docId]) +
+                        "\" norm=\"" + documentNorms[docId] +
+                        "\" length=\"" + documentLengths[docId] + "\"/>\n");
+            }
+            writer.write("  </documents>\n");
+            writer.write("  <terms>\n");
+            // postings as doc id gaps and term frequencies (weight times document length, which gives back the
+            // integer the weight was computed from)
+            StringBuilder docs = new StringBuilder();
+            StringBuilder values = new StringBuilder();
+            for (int termId = 0; termId < terms.length; termId++) {
+                int[] postingDocs = postingDocuments[termId];
+                docs.setLength(0);
+                values.setLength(0);
+                for (int i = 0; i < postingDocs.length; i++) {
+                    if (i > 0) {
+                        docs.append(' ');
+                        values.append(' ');
+                    }
+                    docs.append(i == 0 ? postingDocs[i] : postingDocs[i] - postingDocs[i - 1]);
+                    values.append(Math.round(postingWeights[termId][i] * documentLengths[postingDocs[i]]));
                 }
-                writer.write("    </entry>\n");
+                writer.write("    <term value=\"" + escapeXml(terms[termId]) +
+                        "\" df=\"" + postingDocs.length +
+                        "\" idf=\"" + inverseDocumentFrequency[termId] +
+                        "\" docs=\"" + docs +
+                        "\" tf=\"" + values + "\"/>\n");
             }
-            writer.write("  </entries>\n");
+            writer.write("  </terms>\n");
             writer.write("</index>\n");
         } catch (IOException e) {
             throw new RuntimeException("Failed to save index as XML: " + path, e);
@@ -125,16 +452,36 @@ public class Index implements Serializable {
     }
 
     public static Index loadIndexFromXml(Path path) {
-        try (BufferedReader reader = new BufferedReader(new FileReader(path.toFile()))) {
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
             Map<String, Map<String, Float>> vector = new HashMap<>();
+            Map<String, Float> idf = new HashMap<>();
+            Map<String, Float> norms = new HashMap<>();
+            Map<String, Integer> lengths = new HashMap<>();
+            List<String> documentNames = new ArrayList<>();
             String line;
             String currentKey = null;
             Map<String, Float> currentVector = null;
+            boolean termFrequencyWeights = false;
 
             while ((line = reader.readLine()) != null) {
                 line = line.trim();
 
-                if (line.startsWith("<entry key=\"")) {
+                if (line.startsWith("<index ")) {
+                    termFrequencyWeights = "tf".equals(extractAttribute(line, "weights"));
+                }
+
+                if (line.startsWith("<document name=\"")) {
+                    String document = extractAttribute(line, "name");
+                    vector.computeIfAbsent(document, key -> new HashMap<>());
+                    norms.put(document, Float.parseFloat(extractAttribute(line, "norm")));
+                    lengths.put(document, Integer.parseInt(extractAttribute(line, "length")));
+                    documentNames.add(document);
+                } else if (line.startsWith("<term value=\"")) {
+                    String term = extractAttribute(line, "value");
+                    idf.put(term, Float.parseFloat(extractAttribute(line, "idf")));
+                    readFrequencies(term, extractAttribute(line, "docs"), extractAttribute(line, "tf"),
+                            documentNames, lengths, vector);
+                } else if (line.startsWith("<entry key=\"")) {
                     currentKey = extractAttribute(line, "key");
                     currentVector = new HashMap<>();
                 } else if (line.startsWith("<vector term=\"")) {
@@ -152,12 +499,50 @@ public class Index implements Serializable {
                     }
                 }
             }
-            return new Index(vector);
+            if (!termFrequencyWeights) {
+                removeInverseDocumentFrequency(vector, idf);
+            }
+            // older document-major exports carry no statistics or lengths, so they are derived again
+            return new Index(vector, idf, norms, lengths);
         } catch (IOException e) {
             throw new RuntimeException("Failed to load index from XML: " + path, e);
         }
     }
 
+    // Older exports stored TF-IDF weights; divide the idf back out (a term in every document keeps weight 0)
+    private static void removeInverseDocumentFrequency(Map<String, Map<String, Float>> vectors, Map<String, Float> idf) {
+        Map<String, Integer> documentFrequency = new HashMap<>();
+        for (Map<String, Float> vector : vectors.values()) {
+            for (String term : vector.keySet()) {
+                documentFrequency.merge(term, 1, Integer::sum);
+            }
+        }
+        for (Map<String, Float> vector : vectors.values()) {
+            vector.replaceAll((term, weight) -> {
+                float termIdf = idf.getOrDefault(term,
+                        TfIdfCalculator.calculateIdf(vectors.size(), documentFrequency.get(term)));
+                return termIdf > 0.0f ? weight / termIdf : 0.0f;
+            });
+        }
+    }
+
+    // Weights as TfIdfCalculator.calculateTf computes them from the frequency and the document length
+    private static void readFrequencies(String term, String docs, String frequencies, List<String> documentNames,
+                                        Map<String, Integer> lengths, Map<String, Map<String, Float>> vector) {
+        if (docs.isEmpty()) {
+            return;
+        }
+        String[] gaps = docs.split(" ");
+        String[] values = frequencies.split(" ");
+        int docId = 0;
+        for (int i = 0; i < gaps.length; i++) {
+            docId += Integer.parseInt(gaps[i]);
+            String document = documentNames.get(docId);
+            vector.computeIfAbsent(document, key -> new HashMap<>())
+                    .put(term, (float) Integer.parseInt(values[i]) / lengths.get(document));
+        }
+    }
+
     private static String extractAttribute(String line, String attributeName) {
         String pattern = attributeName + "=\"";
         int startIndex = line.indexOf(pattern);
@@ -0,0 +1,45 @@
+package io.zaaim.arindexer.model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * Reads serialized index files from both layouts. Files written before the inverted layout hold an
+ * {@code Index} of serialVersionUID 1 with a document-major map of TF-IDF weights; their class
+ * descriptor is resolved to {@link DocumentMajorIndex} so they can be converted instead of failing.
+ */
+class LegacyIndexInputStream extends ObjectInputStream {
+
+    private static final long DOCUMENT_MAJOR_VERSION = 1L;
+
+    LegacyIndexInputStream(InputStream in) throws IOException {
+        super(in);
+    }
+
+    @Override
+    protected ObjectStreamClass readClassDescriptor() throws IOException, ClassNotFoundException {
+        ObjectStreamClass descriptor = super.readClassDescriptor();
+        if (descriptor.getName().equals(Index.class.getName())
+                && descriptor.getSerialVersionUID() == DOCUMENT_MAJOR_VERSION) {
+            return ObjectStreamClass.lookup(DocumentMajorIndex.class);
+        }
+        return descriptor;
+    }
+
+    // Field names and types must stay those of the old Index, they are matched against the stream
+    static final class DocumentMajorIndex implements Serializable {
+        private static final long serialVersionUID = DOCUMENT_MAJOR_VERSION;
+
+        private Map<String, Map<String, Float>> indexMap;
+        private Path indexPath;
+
+        Map<String, Map<String, Float>> documentVectors() {
+            return indexMap;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package io.zaaim.arindexer.model;
+
+import io.zaaim.arindexer.storage.DurableFiles;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Documents of one segment that have not been deleted, one bit per doc id.
+ * An instance is never changed once created: deleting returns a copy, so a
+ * search keeps the view it started with and checks a document with a single
+ * bit test. Deleted documents stay in the segment until it is merged.
+ *
+ * <pre>
+ * int magic "ARDL", int doc count, long[(doc count + 63) / 64] live bits
+ * </pre>
+ */
+public final class LiveDocs {
+
+    private static final int MAGIC = 0x4C445241; // "ARDL" little-endian
+
+    private final long[] bits;
+    private final int documentCount;
+    private final int deletedCount;
+
+    private LiveDocs(long[] bits, int documentCount, int deletedCount) {
+        this.bits = bits;
+        this.documentCount = documentCount;
+        this.deletedCount = deletedCount;
+    }
+
+    public static LiveDocs all(int documentCount) {
+        long[] bits = new long[(documentCount + 63) >>> 6];
+        for (int docId = 0; docId < documentCount; docId++) {
+            bits[docId >>> 6] |= 1L << docId;
+        }
+        return new LiveDocs(bits, documentCount, 0);
+    }
+
+    public boolean isLive(int docId) {
+        return (bits[docId >>> 6] & (1L << docId)) != 0;
+    }
+
+    public int getDocumentCount() {
+        return documentCount;
+    }
+
+    public int getDeletedCount() {
+        return deletedCount;
+    }
+
+    public int getLiveCount() {
+        return documentCount - deletedCount;
+    }
+
+    // Copy with the given doc ids also deleted; returns this when all of them already were
+    public LiveDocs withDeleted(int[] docIds, int count) {
+        long[] copy = null;
+        int deleted = deletedCount;
+        for (int i = 0; i < count; i++) {
+            int docId = docIds[i];
+            long[] current = copy == null ? bits : copy;
+            if ((current[docId >>> 6] & (1L << docId)) != 0) {
+                if (copy == null) {
+                    copy = bits.clone();
+                }
+                copy[docId >>> 6] &= ~(1L << docId);
+                deleted++;
+            }
+        }
+        return copy == null ? this : new LiveDocs(copy, documentCount, deleted);
+    }
+
+    // Forced to disk under a temporary name, then moved into place
+    public void write(Path path) {
+        ByteBuffer out = ByteBuffer.allocate(Integer.BYTES * 2 + Long.BYTES * bits.length)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(MAGIC).putInt(documentCount);
+        for (long word : bits) {
+            out.putLong(word);
+        }
+        try {
+            DurableFiles.write(path, out.array());
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write deleted documents: " + path, e);
+        }
+    }
+
+    public static LiveDocs read(Path path, int documentCount) {
+        try {
+            ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(path)).order(ByteOrder.LITTLE_ENDIAN);
+            if (in.getInt() != MAGIC || in.getInt() != documentCount) {
+                throw new IllegalStateException("Deleted documents do not match their segment: " + path);
+            }
+            long[] bits = new long[(documentCount + 63) >>> 6];
+            int live = 0;
+            for (int i = 0; i < bits.length; i++) {
+                bits[i] = in.getLong();
+                live += Long.bitCount(bits[i]);
+            }
+            return new LiveDocs(bits, documentCount, documentCount - live);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read deleted documents: " + path, e);
+        }
+    }
+}
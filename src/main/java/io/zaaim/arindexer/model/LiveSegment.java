@@ -0,0 +1,20 @@
+package io.zaaim.arindexer.model;
+
+/**
+ * A segment as seen by one search: the segment and its live documents at the
+ * time the search started. liveDocs is null when nothing has been deleted.
+ */
+public record LiveSegment(Segment segment, LiveDocs liveDocs) {
+
+    public boolean isLive(int docId) {
+        return liveDocs == null || liveDocs.isLive(docId);
+    }
+
+    public int getLiveCount() {
+        return liveDocs == null ? segment.getDocumentCount() : liveDocs.getLiveCount();
+    }
+
+    public int getDeletedCount() {
+        return liveDocs == null ? 0 : liveDocs.getDeletedCount();
+    }
+}
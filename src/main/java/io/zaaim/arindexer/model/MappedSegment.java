@@ -0,0 +1,271 @@
+package io.zaaim.arindexer.model;
+
+import io.zaaim.arindexer.storage.BinaryIndexFormat;
+import io.zaaim.arindexer.storage.PostingsCodec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only segment over a binary index file mapped with {@link FileChannel#map}.
+ * Opening only parses the header; terms are found by binary search over the
+ * term index and postings, norms and names are read straight from the mapping,
+ * so nothing is copied onto the heap and the OS page cache is shared by every
+ * process that maps the same file. Compressed postings are decoded one block
+ * at a time as the iterator reaches them; they hold raw term frequencies,
+ * divided by the document length from the lengths table as each weight is
+ * read. Only absolute reads are used, so one instance can be searched from
+ * many threads.
+ * <p>
+ * The mapping is released when the buffer is garbage collected, never
+ * explicitly: Java 17 has no safe way to unmap, and reading an unmapped
+ * buffer crashes the JVM, which a search still holding an old snapshot
+ * must never be able to do. A deleted segment file therefore keeps its disk
+ * space until its mapping is collected.
+ */
+public class MappedSegment implements Segment {
+
+    private final Path path;
+    private final ByteBuffer buffer;
+    private final BinaryIndexFormat.Header header;
+
+    private MappedSegment(Path path, ByteBuffer buffer, BinaryIndexFormat.Header header) {
+        this.path = path;
+        this.buffer = buffer;
+        this.header = header;
+    }
+
+    public static MappedSegment open(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Segment is too large to map as one region: " + path);
+            }
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            return new MappedSegment(path, buffer, BinaryIndexFormat.Header.parse(buffer, path));
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to map segment: " + path, e);
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    @Override
+    public int getTermId(String term) {
+        int low = 0;
+        int high = header.termCount() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = readString(termEntry(mid)).compareTo(term);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int getTermCount() {
+        return header.termCount();
+    }
+
+    @Override
+    public String getTerm(int termId) {
+        return readString(termEntry(termId));
+    }
+
+    @Override
+    public int getDocumentFrequency(int termId) {
+        return buffer.getInt(termTrailer(termId));
+    }
+
+    @Override
+    public float getInverseDocumentFrequency(int termId) {
+        return buffer.getFloat(termTrailer(termId) + Integer.BYTES);
+    }
+
+    @Override
+    public float getMaxImpact(int termId) {
+        return buffer.getFloat(termTrailer(termId) + Integer.BYTES + Float.BYTES + Long.BYTES + Float.BYTES);
+    }
+
+    @Override
+    public PostingsIterator postings(int termId) {
+        int trailer = termTrailer(termId);
+        int df = buffer.getInt(trailer);
+        int offset = (int) buffer.getLong(trailer + Integer.BYTES + Float.BYTES);
+        return new BlockPostingsIterator(buffer, offset, df, (int) header.documentLengthsOffset());
+    }
+
+    @Override
+    public int getDocumentCount() {
+        return header.documentCount();
+    }
+
+    @Override
+    public String getDocumentName(int docId) {
+        return readString((int) buffer.getLong((int) header.documentIndexOffset() + Long.BYTES * docId));
+    }
+
+    @Override
+    public float getDocumentNorm(int docId) {
+        return buffer.getFloat((int) header.normsOffset() + Float.BYTES * docId);
+    }
+
+    @Override
+    public int getDocumentLength(int docId) {
+        return buffer.getInt((int) header.documentLengthsOffset() + Integer.BYTES * docId);
+    }
+
+    // Postings live in the page cache; only this object is on the heap
+    @Override
+    public long estimatedSizeBytes() {
+        return 256;
+    }
+
+    private int termEntry(int termId) {
+        return (int) buffer.getLong((int) header.termIndexOffset() + Long.BYTES * termId);
+    }
+
+    private int termTrailer(int termId) {
+        int entry = termEntry(termId);
+        return entry + Integer.BYTES + buffer.getInt(entry);
+    }
+
+    private String readString(int offset) {
+        byte[] bytes = new byte[buffer.getInt(offset)];
+        buffer.get(offset + Integer.BYTES, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Decodes one block of doc ids and stored values at a time; advance skips whole blocks by their last doc id
+    private static final class BlockPostingsIterator implements PostingsIterator {
+        private final ByteBuffer buffer;
+        private final int offset;
+        private final int count;
+        private final int blocks;
+        // position of the document lengths table
+        private final int lengthsOffset;
+        private final int[] documents = new int[PostingsCodec.BLOCK_SIZE];
+        private final int[] values = new int[PostingsCodec.BLOCK_SIZE];
+        private int block = -1;
+        private int blockLength;
+        private int position;
+        private int docId = -1;
+        // block picked by shallowAdvance, not necessarily decoded
+        private int shallowBlock;
+
+        BlockPostingsIterator(ByteBuffer buffer, int offset, int count, int lengthsOffset) {
+            this.buffer = buffer;
+            this.offset = offset;
+            this.count = count;
+            this.blocks = PostingsCodec.blockCount(count);
+            this.lengthsOffset = lengthsOffset;
+        }
+
+        @Override
+        public int docId() {
+            return docId;
+        }
+
+        @Override
+        public int nextDoc() {
+            if (++position >= blockLength) {
+                if (block + 1 >= blocks) {
+                    return docId = NO_MORE_DOCS;
+                }
+                loadBlock(block + 1);
+            }
+            return docId = documents[position];
+        }
+
+        @Override
+        public int advance(int target) {
+            if (docId >= target) {
+                return docId;
+            }
+            if (block < 0 || documents[blockLength - 1] < target) {
+                int next = findBlock(block + 1, target);
+                if (next >= blocks) {
+                    block = blocks;
+                    blockLength = 0;
+                    return docId = NO_MORE_DOCS;
+                }
+                loadBlock(next);
+            }
+            while (documents[position] < target) {
+                position++;
+            }
+            return docId = documents[position];
+        }
+
+        @Override
+        public float weight() {
+            return PostingsCodec.weight(values[position], buffer.getInt(lengthsOffset + Integer.BYTES * docId));
+        }
+
+        @Override
+        public int cost() {
+            return count;
+        }
+
+        @Override
+        public int shallowAdvance(int target) {
+            if (block >= 0 && block < blocks && documents[blockLength - 1] >= target) {
+                shallowBlock = block;
+                return documents[blockLength - 1];
+            }
+            shallowBlock = findBlock(Math.max(block, 0), target);
+            return shallowBlock < blocks ? lastDocument(shallowBlock) : NO_MORE_DOCS;
+        }
+
+        @Override
+        public float blockMaxImpact() {
+            return shallowBlock < blocks ? PostingsCodec.blockMaxImpact(buffer, offset, shallowBlock) : 0.0f;
+        }
+
+        // First block at or after from whose last doc id is >= target: gallop, then binary search the skip table
+        private int findBlock(int from, int target) {
+            int bound = 1;
+            while (from + bound - 1 < blocks && lastDocument(from + bound - 1) < target) {
+                bound <<= 1;
+            }
+            int low = from + (bound >>> 1);
+            int high = Math.min(from + bound - 1, blocks - 1);
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (lastDocument(mid) < target) {
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return low;
+        }
+
+        private int lastDocument(int index) {
+            return PostingsCodec.lastDocument(buffer, offset, index);
+        }
+
+        private void loadBlock(int next) {
+            int previous = next == 0 ? -1 : lastDocument(next - 1);
+            blockLength = Math.min(PostingsCodec.BLOCK_SIZE, count - next * PostingsCodec.BLOCK_SIZE);
+            PostingsCodec.decodeBlock(buffer,
+                    PostingsCodec.blockOffset(buffer, offset, count, next), blockLength, previous, documents, values);
+            block = next;
+            position = 0;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package io.zaaim.arindexer.model;
+
+/**
+ * Forward-only cursor over one term's postings, in ascending doc id order.
+ * A fresh iterator is positioned before the first posting. Postings are grouped
+ * in blocks, each with its own score bound, so block-max pruning can look at a
+ * block before deciding to decode it.
+ */
+public interface PostingsIterator {
+
+    int NO_MORE_DOCS = Integer.MAX_VALUE;
+
+    // Current doc id, -1 before the first call to nextDoc/advance
+    int docId();
+
+    int nextDoc();
+
+    // Moves to the first doc id >= target and returns it
+    int advance(int target);
+
+    // Weight of the term in the current document
+    float weight();
+
+    // Number of postings, i.e. the term's document frequency
+    int cost();
+
+    // Moves only the block cursor, without decoding postings, to the block holding the
+    // first doc id >= target and returns that block's last doc id (NO_MORE_DOCS past the end)
+    int shallowAdvance(int target);
+
+    // Upper bound of weight / document norm within the block chosen by shallowAdvance
+    float blockMaxImpact();
+}
@@ -0,0 +1,209 @@
+package io.zaaim.arindexer.model;
+
+import io.zaaim.arindexer.storage.PostingsCodec;
+import io.zaaim.arindexer.util.TfIdfCalculator;
+
+import java.util.Arrays;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * A segment searched with document norms recomputed from newer collection
+ * statistics than the ones it was written with. Postings hold term frequency /
+ * document length and do not depend on the rest of the collection, so only
+ * the norms and the score bounds derived from them change; they are kept on
+ * the heap and the segment itself, file or not, is left as it is.
+ */
+public final class RenormalizedSegment implements Segment {
+
+    private final Segment segment;
+    private final float[] inverseDocumentFrequency;
+    private final float[] documentNorms;
+    private final float[] maxImpacts;
+    // per term id, the last doc id and the bound of each block of PostingsCodec.BLOCK_SIZE postings
+    private final int[][] blockLastDocuments;
+    private final float[][] blockMaxImpacts;
+
+    private RenormalizedSegment(Segment segment, float[] inverseDocumentFrequency, float[] documentNorms,
+                                float[] maxImpacts, int[][] blockLastDocuments, float[][] blockMaxImpacts) {
+        this.segment = segment;
+        this.inverseDocumentFrequency = inverseDocumentFrequency;
+        this.documentNorms = documentNorms;
+        this.maxImpacts = maxImpacts;
+        this.blockLastDocuments = blockLastDocuments;
+        this.blockMaxImpacts = blockMaxImpacts;
+    }
+
+    // Reads every posting twice: once for the norms, once for the bounds that depend on them
+    public static RenormalizedSegment of(Segment segment, ToDoubleFunction<String> inverseDocumentFrequency) {
+        Segment base = segment instanceof RenormalizedSegment renormalized ? renormalized.segment : segment;
+        int termCount = base.getTermCount();
+        float[] idfs = new float[termCount];
+        double[] squaredNorms = new double[base.getDocumentCount()];
+        for (int termId = 0; termId < termCount; termId++) {
+            idfs[termId] = (float) inverseDocumentFrequency.applyAsDouble(base.getTerm(termId));
+            PostingsIterator postings = base.postings(termId);
+            for (int doc = postings.nextDoc(); doc != PostingsIterator.NO_MORE_DOCS; doc = postings.nextDoc()) {
+                float weight = postings.weight() * idfs[termId];
+                squaredNorms[doc] += weight * weight;
+            }
+        }
+        float[] norms = new float[squaredNorms.length];
+        for (int docId = 0; docId < norms.length; docId++) {
+            norms[docId] = (float) Math.sqrt(squaredNorms[docId]);
+        }
+
+        float[] maxImpacts = new float[termCount];
+        int[][] blockLastDocuments = new int[termCount][];
+        float[][] blockMaxImpacts = new float[termCount][];
+        for (int termId = 0; termId < termCount; termId++) {
+            PostingsIterator postings = base.postings(termId);
+            int blocks = PostingsCodec.blockCount(postings.cost());
+            blockLastDocuments[termId] = new int[blocks];
+            blockMaxImpacts[termId] = new float[blocks];
+            int i = 0;
+            for (int doc = postings.nextDoc(); doc != PostingsIterator.NO_MORE_DOCS; doc = postings.nextDoc(), i++) {
+                float impact = TfIdfCalculator.calculateImpact(postings.weight(), norms[doc]);
+                int block = i / PostingsCodec.BLOCK_SIZE;
+                blockLastDocuments[termId][block] = doc;
+                blockMaxImpacts[termId][block] = Math.max(blockMaxImpacts[termId][block], impact);
+                maxImpacts[termId] = Math.max(maxImpacts[termId], impact);
+            }
+        }
+        return new RenormalizedSegment(base, idfs, norms, maxImpacts, blockLastDocuments, blockMaxImpacts);
+    }
+
+    // The segment as written, with its original norms
+    public Segment getSegment() {
+        return segment;
+    }
+
+    @Override
+    public int getTermId(String term) {
+        return segment.getTermId(term);
+    }
+
+    @Override
+    public int getTermCount() {
+        return segment.getTermCount();
+    }
+
+    @Override
+    public String getTerm(int termId) {
+        return segment.getTerm(termId);
+    }
+
+    @Override
+    public int getDocumentFrequency(int termId) {
+        return segment.getDocumentFrequency(termId);
+    }
+
+    @Override
+    public float getInverseDocumentFrequency(int termId) {
+        return inverseDocumentFrequency[termId];
+    }
+
+    @Override
+    public PostingsIterator postings(int termId) {
+        return new RenormalizedPostings(segment.postings(termId), blockLastDocuments[termId], blockMaxImpacts[termId],
+                maxImpacts[termId]);
+    }
+
+    @Override
+    public float getMaxImpact(int termId) {
+        return maxImpacts[termId];
+    }
+
+    @Override
+    public int getDocumentCount() {
+        return segment.getDocumentCount();
+    }
+
+    @Override
+    public String getDocumentName(int docId) {
+        return segment.getDocumentName(docId);
+    }
+
+    @Override
+    public int getDocumentId(String name) {
+        return segment.getDocumentId(name);
+    }
+
+    @Override
+    public float getDocumentNorm(int docId) {
+        return documentNorms[docId];
+    }
+
+    @Override
+    public int getDocumentLength(int docId) {
+        return segment.getDocumentLength(docId);
+    }
+
+    @Override
+    public long estimatedSizeBytes() {
+        long bytes = segment.estimatedSizeBytes() + 4L * documentNorms.length;
+        for (int termId = 0; termId < maxImpacts.length; termId++) {
+            bytes += 48 + 8L * blockLastDocuments[termId].length;
+        }
+        return bytes;
+    }
+
+    // The segment's own postings with the recomputed block bounds, found by the last doc id of the block
+    private static final class RenormalizedPostings implements PostingsIterator {
+        private final PostingsIterator postings;
+        private final int[] blockLastDocuments;
+        private final float[] blockMaxImpacts;
+        private final float maxImpact;
+        private int block;
+
+        RenormalizedPostings(PostingsIterator postings, int[] blockLastDocuments, float[] blockMaxImpacts,
+                             float maxImpact) {
+            this.postings = postings;
+            this.blockLastDocuments = blockLastDocuments;
+            this.blockMaxImpacts = blockMaxImpacts;
+            this.maxImpact = maxImpact;
+        }
+
+        @Override
+        public int docId() {
+            return postings.docId();
+        }
+
+        @Override
+        public int nextDoc() {
+            return postings.nextDoc();
+        }
+
+        @Override
+        public int advance(int target) {
+            return postings.advance(target);
+        }
+
+        @Override
+        public float weight() {
+            return postings.weight();
+        }
+
+        @Override
+        public int cost() {
+            return postings.cost();
+        }
+
+        @Override
+        public int shallowAdvance(int target) {
+            int lastDocument = postings.shallowAdvance(target);
+            block = lastDocument == NO_MORE_DOCS
+                    ? blockLastDocuments.length
+                    : Arrays.binarySearch(blockLastDocuments, lastDocument);
+            return lastDocument;
+        }
+
+        @Override
+        public float blockMaxImpact() {
+            if (block < 0) {
+                // not a block boundary of this segment; the term's bound still holds
+                return maxImpact;
+            }
+            return block < blockMaxImpacts.length ? blockMaxImpacts[block] : 0.0f;
+        }
+    }
+}
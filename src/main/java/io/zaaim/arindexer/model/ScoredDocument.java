@@ -0,0 +1,4 @@
+package io.zaaim.arindexer.model;
+
+public record ScoredDocument(String document, float score) {
+}
@@ -0,0 +1,11 @@
+package io.zaaim.arindexer.model;
+
+import java.util.List;
+
+// Ranked documents of one query plus how many postings were scored or skipped to find them
+public record SearchHits(List<ScoredDocument> documents, long postingsScored, long postingsSkipped) {
+
+    public static SearchHits empty() {
+        return new SearchHits(List.of(), 0, 0);
+    }
+}
@@ -0,0 +1,73 @@
+package io.zaaim.arindexer.model;
+
+import io.zaaim.arindexer.storage.IndexFormat;
+
+import java.nio.file.Path;
+
+/**
+ * Read-only view of an index that search runs against, whether it lives on
+ * the heap ({@link Index}) or is mapped from a file ({@link MappedSegment}).
+ */
+public interface Segment {
+
+    // Term id for a stemmed term, or -1 if the segment does not contain it
+    int getTermId(String term);
+
+    // Terms are numbered in sorted order
+    int getTermCount();
+
+    String getTerm(int termId);
+
+    int getDocumentFrequency(int termId);
+
+    // Idf the document norms of this segment were computed with
+    float getInverseDocumentFrequency(int termId);
+
+    // Weights are term frequency / document length; scoring multiplies them by the collection idf
+    PostingsIterator postings(int termId);
+
+    // Upper bound of weight / document norm over the term's postings
+    float getMaxImpact(int termId);
+
+    int getDocumentCount();
+
+    String getDocumentName(int docId);
+
+    // Doc id of a document, or -1; names are numbered in sorted order
+    default int getDocumentId(String name) {
+        int low = 0;
+        int high = getDocumentCount() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = getDocumentName(mid).compareTo(name);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    float getDocumentNorm(int docId);
+
+    // Number of terms in the document, which turns its weights back into raw frequencies
+    int getDocumentLength(int docId);
+
+    // Heap held by this segment, used to bound how many stay loaded
+    long estimatedSizeBytes();
+
+    default boolean isEmpty() {
+        return getDocumentCount() == 0;
+    }
+
+    static Segment open(Path path) {
+        IndexFormat format = IndexFormat.of(path);
+        if (format == IndexFormat.MAPPED) {
+            return MappedSegment.open(path);
+        }
+        return Index.fromFile(path);
+    }
+}
@@ -1,15 +1,16 @@
 package io.zaaim.arindexer.service;
 
+import io.zaaim.arindexer.model.ScoredDocument;
 import io.zaaim.arindexer.storage.StorageService;
 
-import java.util.Map;
+import java.util.List;
 
 public class DocumentIndexService {
 
     // Placeholder: plug in real indexing (Lucene, custom, etc.)
-    public Map<String, Float> search(String query, String index, int limit) {
+    public List<ScoredDocument> search(String query, String index, int limit) {
         // Implement lookup against index
-        return Map.of(); // stub
+        return List.of(); // stub
     }
 
     public DocumentIndexService(StorageService storageService) {
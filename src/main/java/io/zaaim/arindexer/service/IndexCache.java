@@ -0,0 +1,142 @@
+package io.zaaim.arindexer.service;
+
+import io.zaaim.arindexer.model.Segment;
+import io.zaaim.arindexer.storage.IndexFormat;
+import io.zaaim.arindexer.util.Constants;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-wide cache of opened index segments, keyed by index name.
+ * An entry is reused until a newer file for the same name shows up in the
+ * indexes directory; least recently used entries are evicted once the
+ * estimated heap footprint of all loaded indexes exceeds the budget.
+ */
+public class IndexCache {
+
+    private static final IndexCache INSTANCE = new IndexCache(Constants.INDEXES_DIR, Constants.INDEX_CACHE_MAX_BYTES);
+
+    private final Path indexDir;
+    private final long maxBytes;
+
+    // access-ordered, so iteration starts at the least recently used index
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Object> loadLocks = new ConcurrentHashMap<>();
+    private long usedBytes;
+
+    // the directory is only listed again when its modification time changes
+    private volatile Listing listing = new Listing(Long.MIN_VALUE, new File[0]);
+
+    private record Entry(Path path, long lastModified, Segment segment, long sizeBytes) {
+    }
+
+    private record Listing(long modified, File[] files, Map<String, File> latestByName) {
+        Listing(long modified, File[] files) {
+            this(modified, files, new ConcurrentHashMap<>());
+        }
+    }
+
+    public IndexCache(Path indexDir, long maxBytes) {
+        this.indexDir = Objects.requireNonNull(indexDir);
+        this.maxBytes = maxBytes;
+    }
+
+    public static IndexCache getInstance() {
+        return INSTANCE;
+    }
+
+    public Segment get(String name) {
+        File latest = findLatest(name);
+        Path path = latest.toPath();
+        long lastModified = latest.lastModified();
+
+        synchronized (loadLocks.computeIfAbsent(name, key -> new Object())) {
+            Entry cached = lookup(name);
+            if (cached != null && cached.path().equals(path) && cached.lastModified() == lastModified) {
+                return cached.segment();
+            }
+            Segment segment = Segment.open(path);
+            store(name, new Entry(path, lastModified, segment, segment.estimatedSizeBytes()));
+            return segment;
+        }
+    }
+
+    // Newest single-file index for name, or null if there is none
+    public Path findLatestFile(String name) {
+        try {
+            return findLatest(name).toPath();
+        } catch (IllegalStateException e) {
+            return null;
+        }
+    }
+
+    public synchronized void invalidate(String name) {
+        Entry removed = entries.remove(name);
+        if (removed != null) {
+            usedBytes -= removed.sizeBytes();
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        usedBytes = 0;
+    }
+
+    private synchronized Entry lookup(String name) {
+        return entries.get(name);
+    }
+
+    private synchronized void store(String name, Entry entry) {
+        Entry previous = entries.remove(name);
+        if (previous != null) {
+            usedBytes -= previous.sizeBytes();
+        }
+        // an index larger than the whole budget is served but not retained
+        if (entry.sizeBytes() > maxBytes) {
+            return;
+        }
+        entries.put(name, entry);
+        usedBytes += entry.sizeBytes();
+
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while (usedBytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, Entry> candidate = eldest.next();
+            if (candidate.getKey().equals(name)) {
+                continue;
+            }
+            usedBytes -= candidate.getValue().sizeBytes();
+            eldest.remove();
+        }
+    }
+
+    private File findLatest(String name) {
+        File dir = indexDir.toFile();
+        long modified = dir.lastModified();
+        Listing current = listing;
+        if (modified != current.modified()) {
+            File[] files = dir.listFiles(File::isFile);
+            if (files == null || files.length == 0) {
+                throw new IllegalStateException("No index files found in directory: " + indexDir);
+            }
+            current = new Listing(modified, files);
+            listing = current;
+        }
+        File[] files = current.files();
+        File latest = current.latestByName().computeIfAbsent(name, key -> Arrays.stream(files)
+                .filter(file -> file.getName().startsWith(key) && IndexFormat.of(file.toPath()) != null)
+                .max(Comparator.comparingLong(File::lastModified))
+                .orElse(null));
+        if (latest == null) {
+            throw new IllegalStateException("Index file not found: " + name);
+        }
+        return latest;
+    }
+}
@@ -0,0 +1,81 @@
+package io.zaaim.arindexer.service;
+
+import io.zaaim.arindexer.model.Index;
+import io.zaaim.arindexer.model.LiveSegment;
+import io.zaaim.arindexer.util.Constants;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves index names to the segments to search. A name whose directory
+ * exists under the indexes directory is a {@link SegmentedIndex}; any other
+ * name falls back to the newest single index file, served by {@link IndexCache}.
+ */
+public class IndexRegistry {
+
+    private static final IndexRegistry INSTANCE = new IndexRegistry(Constants.INDEXES_DIR, IndexCache.getInstance());
+
+    private final Path indexDir;
+    private final IndexCache fileCache;
+    private final TieredMergePolicy mergePolicy = new TieredMergePolicy(Constants.MERGE_FACTOR, Constants.MERGE_FACTOR);
+    private final Map<String, SegmentedIndex> segmented = new ConcurrentHashMap<>();
+
+    public IndexRegistry(Path indexDir, IndexCache fileCache) {
+        this.indexDir = indexDir;
+        this.fileCache = fileCache;
+    }
+
+    public static IndexRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    // The current version of name, pinned until the snapshot is closed
+    public IndexSnapshot acquire(String name) {
+        SegmentedIndex index = find(name);
+        return index != null ? index.acquire() : IndexSnapshot.of(new LiveSegment(fileCache.get(name), null));
+    }
+
+    // The segmented index for name, or null when it has none
+    public SegmentedIndex find(String name) {
+        SegmentedIndex index = segmented.get(validateName(name));
+        if (index == null && Files.isDirectory(indexDir.resolve(name))) {
+            index = getOrCreate(name);
+        }
+        return index;
+    }
+
+    // Opens or creates the segmented index for name; a new one starts from the newest single-file index of that name
+    public SegmentedIndex getOrCreate(String name) {
+        return segmented.computeIfAbsent(validateName(name), key -> {
+            Path directory = indexDir.resolve(key);
+            boolean created = !Files.isDirectory(directory);
+            SegmentedIndex index = SegmentedIndex.open(directory, Constants.INDEX_FORMAT, mergePolicy,
+                    Constants.REFRESH_INTERVAL_MS, Constants.FLUSH_DOCUMENTS);
+            if (created) {
+                Path legacy = fileCache.findLatestFile(key);
+                if (legacy != null) {
+                    index.replaceAll(Index.fromFile(legacy));
+                }
+            }
+            return index;
+        });
+    }
+
+    // Writes out documents that are only held in memory, e.g. before the process exits
+    public void flushAll() {
+        for (SegmentedIndex index : segmented.values()) {
+            index.flush();
+        }
+    }
+
+    // Index names are directory names under the indexes directory, so nothing that could leave it is accepted
+    public static String validateName(String name) {
+        if (name == null || !name.matches("[A-Za-z0-9._-]+") || name.equals(".") || name.equals("..")) {
+            throw new IllegalArgumentException("Invalid index name: " + name);
+        }
+        return name;
+    }
+}
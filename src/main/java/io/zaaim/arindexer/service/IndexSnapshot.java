@@ -0,0 +1,73 @@
+package io.zaaim.arindexer.service;
+
+import io.zaaim.arindexer.model.LiveSegment;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * One published version of an index, pinned for as long as it is open.
+ * The index holds a reference to its current snapshot and every search takes
+ * another; the files of a replaced version are only released once the last
+ * search that started on it closes the snapshot, so reindexing never pulls
+ * files from under a running query.
+ */
+public final class IndexSnapshot implements AutoCloseable {
+
+    private final long version;
+    private final List<LiveSegment> segments;
+    private final List<Path> files;
+    private final Consumer<List<Path>> onRelease;
+    private final AtomicInteger references = new AtomicInteger(1);
+
+    IndexSnapshot(long version, List<LiveSegment> segments, List<Path> files, Consumer<List<Path>> onRelease) {
+        this.version = version;
+        this.segments = List.copyOf(segments);
+        this.files = List.copyOf(files);
+        this.onRelease = onRelease;
+    }
+
+    // A single unmanaged segment, for indexes that are one plain file
+    static IndexSnapshot of(LiveSegment segment) {
+        return new IndexSnapshot(0, List.of(segment), List.of(), files -> {
+        });
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public List<LiveSegment> segments() {
+        return segments;
+    }
+
+    // Files of this version, released together once nothing references it
+    List<Path> files() {
+        return files;
+    }
+
+    // Fails once the snapshot has been released, so the caller picks up the newer one
+    boolean tryAcquire() {
+        int current;
+        do {
+            current = references.get();
+            if (current <= 0) {
+                return false;
+            }
+        } while (!references.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    void release() {
+        if (references.decrementAndGet() == 0) {
+            onRelease.accept(files);
+        }
+    }
+
+    @Override
+    public void close() {
+        release();
+    }
+}
@@ -7,4 +7,22 @@ import java.nio.file.Path;
 
 public interface Indexer {
     Index createIndex(Path indexPath) throws IOException;
+
+    // Writes the index straight to a binary index file
+    default void writeIndex(Path indexPath, Path output) throws IOException {
+        writeIndex(indexPath, output, null);
+    }
+
+    // Same, reporting every file to files as it is read, unless files is null
+    void writeIndex(Path indexPath, Path output, FileListener files) throws IOException;
+
+    /**
+     * Told about each indexed file by the thread that read it, so callers need
+     * not read the corpus a second time. The attributes are taken before the
+     * content is read, and the hash is the SHA-256 of that content.
+     */
+    @FunctionalInterface
+    interface FileListener {
+        void fileRead(String document, long size, long modifiedMillis, String hash);
+    }
 }
@@ -0,0 +1,111 @@
+package io.zaaim.arindexer.service;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * One indexing run submitted to {@link IndexingJobs}: its state, live
+ * progress and outcome. Jobs doing the same work are coalesced while they
+ * wait, so the key names the work, not the request.
+ */
+public final class IndexingJob {
+
+    public enum State {
+        QUEUED, RUNNING, SUCCEEDED, FAILED, CANCELLED;
+
+        public boolean isDone() {
+            return this == SUCCEEDED || this == FAILED || this == CANCELLED;
+        }
+    }
+
+    private final long id;
+    private final String key;
+    private final long submittedMillis = System.currentTimeMillis();
+    private final IndexingProgress progress = new IndexingProgress();
+    private final AtomicReference<State> state = new AtomicReference<>(State.QUEUED);
+    private volatile long finishedMillis;
+    private volatile String result;
+    private volatile String error;
+
+    IndexingJob(long id, String key) {
+        this.id = id;
+        this.key = key;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    public IndexingProgress getProgress() {
+        return progress;
+    }
+
+    public long getSubmittedMillis() {
+        return submittedMillis;
+    }
+
+    // 0 while the job has not finished
+    public long getFinishedMillis() {
+        return finishedMillis;
+    }
+
+    // Summary of a job that succeeded, null otherwise
+    public String getResult() {
+        return result;
+    }
+
+    // Why a job failed, null otherwise
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * Cancels the job: a queued job never starts, a running one stops at the
+     * next document. Returns false if it had already finished.
+     */
+    public boolean cancel() {
+        progress.cancel();
+        if (state.compareAndSet(State.QUEUED, State.CANCELLED)) {
+            finishedMillis = System.currentTimeMillis();
+            progress.setPhase("cancelled");
+            return true;
+        }
+        return !state.get().isDone();
+    }
+
+    // False if the job was cancelled before it could start
+    boolean start() {
+        if (!state.compareAndSet(State.QUEUED, State.RUNNING)) {
+            return false;
+        }
+        progress.start("running");
+        return true;
+    }
+
+    void succeed(String result) {
+        this.result = result;
+        finish(State.SUCCEEDED);
+    }
+
+    void fail(String error) {
+        this.error = error;
+        finish(State.FAILED);
+    }
+
+    void cancelled() {
+        finish(State.CANCELLED);
+    }
+
+    private void finish(State outcome) {
+        finishedMillis = System.currentTimeMillis();
+        progress.setPhase(outcome.name().toLowerCase());
+        state.set(outcome);
+    }
+}
@@ -0,0 +1,111 @@
+package io.zaaim.arindexer.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs indexing in the background, one job at a time on its own thread, so
+ * request handlers only submit work and return. A job submitted while another
+ * one with the same key is still queued is not queued twice: the caller gets
+ * the queued job, which has not started yet and so sees the same files.
+ */
+public class IndexingJobs {
+
+    private static final Logger LOGGER = Logger.getLogger(IndexingJobs.class.getName());
+    private static final IndexingJobs INSTANCE = new IndexingJobs();
+
+    // finished jobs kept for status requests
+    private static final int HISTORY = 32;
+
+    /**
+     * The work of a job; reports to progress, stops when it is cancelled and
+     * returns a short summary.
+     */
+    @FunctionalInterface
+    public interface Task {
+        String run(IndexingProgress progress) throws Exception;
+    }
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "indexing-job");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicLong nextId = new AtomicLong(1);
+    // guarded by this
+    private final Map<Long, IndexingJob> jobs = new LinkedHashMap<>();
+    private final Map<String, IndexingJob> queued = new HashMap<>();
+
+    public static IndexingJobs getInstance() {
+        return INSTANCE;
+    }
+
+    public synchronized IndexingJob submit(String key, Task task) {
+        IndexingJob waiting = queued.get(key);
+        if (waiting != null && waiting.getState() == IndexingJob.State.QUEUED) {
+            return waiting;
+        }
+        IndexingJob job = new IndexingJob(nextId.getAndIncrement(), key);
+        queued.put(key, job);
+        jobs.put(job.getId(), job);
+        forgetFinished();
+        executor.execute(() -> run(job, task));
+        return job;
+    }
+
+    // The job with id, or null if there is none or it finished long ago
+    public synchronized IndexingJob get(long id) {
+        return jobs.get(id);
+    }
+
+    public synchronized List<IndexingJob> list() {
+        return new ArrayList<>(jobs.values());
+    }
+
+    private void run(IndexingJob job, Task task) {
+        synchronized (this) {
+            queued.remove(job.getKey(), job);
+        }
+        if (!job.start()) {
+            return;
+        }
+        try {
+            job.succeed(task.run(job.getProgress()));
+        } catch (CancellationException e) {
+            job.cancelled();
+        } catch (Exception | OutOfMemoryError e) {
+            if (job.getProgress().isCancelled()) {
+                job.cancelled();
+                return;
+            }
+            LOGGER.log(Level.WARNING, "Indexing job " + job.getId() + " failed", e);
+            job.fail(e.getMessage() == null ? e.toString() : e.getMessage());
+        }
+    }
+
+    private void forgetFinished() {
+        int finished = 0;
+        for (IndexingJob job : jobs.values()) {
+            if (job.getState().isDone()) {
+                finished++;
+            }
+        }
+        Iterator<IndexingJob> oldest = jobs.values().iterator();
+        while (finished > HISTORY && oldest.hasNext()) {
+            if (oldest.next().getState().isDone()) {
+                oldest.remove();
+                finished--;
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package io.zaaim.arindexer.service;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters an indexing run updates as it goes, read by whoever watches it,
+ * and the flag that cancels it. Indexing threads call {@link #checkCancelled}
+ * between documents, so a cancelled run stops at the next one.
+ */
+public final class IndexingProgress {
+
+    private final AtomicLong filesTotal = new AtomicLong();
+    private final AtomicLong filesRead = new AtomicLong();
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong tokensProcessed = new AtomicLong();
+    private volatile String phase = "queued";
+    private volatile long startedNanos;
+    private volatile boolean cancelled;
+
+    public void start(String phase) {
+        this.startedNanos = System.nanoTime();
+        this.phase = phase;
+    }
+
+    public void setPhase(String phase) {
+        this.phase = phase;
+    }
+
+    public void addFilesTotal(long files) {
+        filesTotal.addAndGet(files);
+    }
+
+    public void fileRead(long bytes) {
+        filesRead.incrementAndGet();
+        bytesRead.addAndGet(bytes);
+    }
+
+    public void tokensProcessed(long tokens) {
+        tokensProcessed.addAndGet(tokens);
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public void checkCancelled() {
+        if (cancelled) {
+            throw new CancellationException("Indexing cancelled");
+        }
+    }
+
+    public String getPhase() {
+        return phase;
+    }
+
+    public long getFilesTotal() {
+        return filesTotal.get();
+    }
+
+    public long getFilesRead() {
+        return filesRead.get();
+    }
+
+    public long getBytesRead() {
+        return bytesRead.get();
+    }
+
+    public long getTokensProcessed() {
+        return tokensProcessed.get();
+    }
+
+    public long getElapsedMillis() {
+        long started = startedNanos;
+        return started == 0 ? 0 : (System.nanoTime() - started) / 1_000_000;
+    }
+
+    public double getBytesPerSecond() {
+        long elapsed = getElapsedMillis();
+        return elapsed == 0 ? 0 : getBytesRead() * 1000.0 / elapsed;
+    }
+
+    // Time left to read the remaining files at the rate so far; -1 until there is a rate
+    public long getEtaMillis() {
+        long read = getFilesRead();
+        long total = getFilesTotal();
+        if (read == 0 || total == 0) {
+            return -1;
+        }
+        return getElapsedMillis() * Math.max(0, total - read) / read;
+    }
+}
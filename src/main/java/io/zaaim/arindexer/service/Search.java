@@ -1,11 +1,12 @@
 package io.zaaim.arindexer.service;
 
-import io.helidon.common.http.HttpRequest;
-import io.zaaim.arindexer.model.Index;
-
-import java.util.List;
-import java.util.Map;
+import io.zaaim.arindexer.model.SearchHits;
+import io.zaaim.arindexer.util.Constants;
 
 public interface Search {
-    Map<String, Float> search(String query, String index, int limit);
+    SearchHits search(String query, String index, int limit, SearchMode mode);
+
+    default SearchHits search(String query, String index, int limit) {
+        return search(query, index, limit, Constants.SEARCH_MODE);
+    }
 }
@@ -0,0 +1,15 @@
+package io.zaaim.arindexer.service;
+
+// How a query is evaluated; all modes return the same ranking, they differ in how much work they skip
+public enum SearchMode {
+    // every posting of every query term is scored
+    EXHAUSTIVE,
+    // documents are skipped using per-term score bounds
+    WAND,
+    // per-block bounds additionally skip whole blocks without decoding them
+    BLOCK_MAX_WAND;
+
+    public static SearchMode of(String name) {
+        return valueOf(name.trim().toUpperCase().replace('-', '_'));
+    }
+}
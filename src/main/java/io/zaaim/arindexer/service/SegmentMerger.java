@@ -0,0 +1,163 @@
+package io.zaaim.arindexer.service;
+
+import io.zaaim.arindexer.model.Index;
+import io.zaaim.arindexer.model.LiveSegment;
+import io.zaaim.arindexer.model.PostingsIterator;
+import io.zaaim.arindexer.model.Segment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Merges segments into one in-heap index, leaving out deleted documents.
+ * Document names and terms are sorted within every segment, so both are
+ * combined with a k-way merge; live doc ids are renumbered in name order, which
+ * keeps each segment's postings in order and lets a term's lists be
+ * concatenated and sorted once. Terms left without postings are dropped. Norms are
+ * recomputed from the merged postings with the idf passed in, normally the
+ * collection idf at the time of the merge. Document lengths are carried over,
+ * so the merged segment keeps raw frequencies.
+ */
+public final class SegmentMerger {
+
+    private SegmentMerger() {
+    }
+
+    // Cursor over the sorted document names or terms of one segment
+    private static final class Cursor {
+        final int segment;
+        final int size;
+        int position;
+        String value;
+
+        Cursor(int segment, int size) {
+            this.segment = segment;
+            this.size = size;
+        }
+    }
+
+    public static Index merge(List<LiveSegment> sources, ToDoubleFunction<String> inverseDocumentFrequency) {
+        List<Segment> segments = new ArrayList<>(sources.size());
+        int documentCount = 0;
+        for (LiveSegment source : sources) {
+            segments.add(source.segment());
+            documentCount += source.getLiveCount();
+        }
+
+        // k-way merge of live document names gives the new doc ids; deleted ones map to -1
+        String[] documents = new String[documentCount];
+        int[] documentLengths = new int[documentCount];
+        int[][] docMap = new int[segments.size()][];
+        PriorityQueue<Cursor> queue = new PriorityQueue<>(Comparator.comparing((Cursor cursor) -> cursor.value)
+                .thenComparingInt(cursor -> cursor.segment));
+        for (int s = 0; s < segments.size(); s++) {
+            docMap[s] = new int[segments.get(s).getDocumentCount()];
+            Arrays.fill(docMap[s], -1);
+            Cursor cursor = new Cursor(s, segments.get(s).getDocumentCount());
+            if (nextLiveDocument(sources.get(s), cursor)) {
+                queue.add(cursor);
+            }
+        }
+        int docId = 0;
+        while (!queue.isEmpty()) {
+            Cursor cursor = queue.poll();
+            documents[docId] = cursor.value;
+            documentLengths[docId] = segments.get(cursor.segment).getDocumentLength(cursor.position);
+            docMap[cursor.segment][cursor.position] = docId++;
+            cursor.position++;
+            if (nextLiveDocument(sources.get(cursor.segment), cursor)) {
+                queue.add(cursor);
+            }
+        }
+
+        // k-way merge of terms; every segment holding the current term contributes its postings
+        List<String> terms = new ArrayList<>();
+        List<int[]> postingDocuments = new ArrayList<>();
+        List<float[]> postingWeights = new ArrayList<>();
+        double[] squaredNorms = new double[documentCount];
+        for (int s = 0; s < segments.size(); s++) {
+            Segment segment = segments.get(s);
+            if (segment.getTermCount() > 0) {
+                Cursor cursor = new Cursor(s, segment.getTermCount());
+                cursor.value = segment.getTerm(0);
+                queue.add(cursor);
+            }
+        }
+        List<Cursor> holders = new ArrayList<>();
+        while (!queue.isEmpty()) {
+            String term = queue.peek().value;
+            holders.clear();
+            while (!queue.isEmpty() && queue.peek().value.equals(term)) {
+                holders.add(queue.poll());
+            }
+
+            int documentFrequency = 0;
+            for (Cursor cursor : holders) {
+                documentFrequency += segments.get(cursor.segment).getDocumentFrequency(cursor.position);
+            }
+            // doc id in the high half and the weight bits in the low half sort by doc id
+            long[] postings = new long[documentFrequency];
+            int filled = 0;
+            for (Cursor cursor : holders) {
+                PostingsIterator iterator = segments.get(cursor.segment).postings(cursor.position);
+                int[] map = docMap[cursor.segment];
+                for (int doc = iterator.nextDoc(); doc != PostingsIterator.NO_MORE_DOCS; doc = iterator.nextDoc()) {
+                    if (map[doc] >= 0) {
+                        postings[filled++] = ((long) map[doc] << 32)
+                                | (Float.floatToRawIntBits(iterator.weight()) & 0xFFFFFFFFL);
+                    }
+                }
+                if (++cursor.position < cursor.size) {
+                    cursor.value = segments.get(cursor.segment).getTerm(cursor.position);
+                    queue.add(cursor);
+                }
+            }
+            if (filled == 0) {
+                continue;
+            }
+            if (holders.size() > 1) {
+                Arrays.sort(postings, 0, filled);
+            }
+
+            double idf = inverseDocumentFrequency.applyAsDouble(term);
+            int[] docs = new int[filled];
+            float[] weights = new float[filled];
+            for (int i = 0; i < filled; i++) {
+                docs[i] = (int) (postings[i] >>> 32);
+                weights[i] = Float.intBitsToFloat((int) postings[i]);
+                float weight = (float) (weights[i] * idf);
+                squaredNorms[docs[i]] += weight * weight;
+            }
+            terms.add(term);
+            postingDocuments.add(docs);
+            postingWeights.add(weights);
+        }
+
+        float[] documentNorms = new float[documentCount];
+        for (int i = 0; i < documentCount; i++) {
+            documentNorms[i] = (float) Math.sqrt(squaredNorms[i]);
+        }
+        float[] idfs = new float[terms.size()];
+        for (int termId = 0; termId < idfs.length; termId++) {
+            idfs[termId] = (float) inverseDocumentFrequency.applyAsDouble(terms.get(termId));
+        }
+        return new Index(documents, documentNorms, documentLengths, terms.toArray(new String[0]), idfs,
+                postingDocuments.toArray(new int[0][]), postingWeights.toArray(new float[0][]));
+    }
+
+    // Moves the cursor to the first live document at or after its position
+    private static boolean nextLiveDocument(LiveSegment source, Cursor cursor) {
+        while (cursor.position < cursor.size && !source.isLive(cursor.position)) {
+            cursor.position++;
+        }
+        if (cursor.position >= cursor.size) {
+            return false;
+        }
+        cursor.value = source.segment().getDocumentName(cursor.position);
+        return true;
+    }
+}
@@ -0,0 +1,847 @@
+package io.zaaim.arindexer.service;
+
+import io.zaaim.arindexer.model.Index;
+import io.zaaim.arindexer.model.LiveDocs;
+import io.zaaim.arindexer.model.LiveSegment;
+import io.zaaim.arindexer.model.RenormalizedSegment;
+import io.zaaim.arindexer.model.Segment;
+import io.zaaim.arindexer.storage.DurableFiles;
+import io.zaaim.arindexer.storage.IndexFormat;
+import io.zaaim.arindexer.storage.IndexManifest;
+import io.zaaim.arindexer.util.TfIdfCalculator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * An index kept as immutable segment files in its own directory. Added
+ * documents are buffered and, on the next refresh, become searchable as an
+ * in-memory segment; once enough of them pile up they are flushed into a new
+ * small segment file, so the cost of an update follows the size of the change
+ * rather than of the corpus. Searches run over every segment with collection
+ * statistics summed across them. A {@link TieredMergePolicy} folds segment
+ * files of similar size together on a background thread. The segment list is
+ * replaced as a whole on every change, so a search keeps working on the list
+ * it started with.
+ * <p>
+ * Deleting a document clears its bit in the {@link LiveDocs} of the segment
+ * that holds it, saved next to the segment file; adding a document under a
+ * name that is already indexed deletes the older copy in the same refresh.
+ * Deleted documents still count in collection statistics until a merge
+ * rewrites their segment without them.
+ * <p>
+ * Postings hold raw term frequency / document length, so a segment stays
+ * valid however the collection changes; only its document norms depend on
+ * collection statistics. Each segment remembers the collection size its norms
+ * were computed for, and once the collection has drifted too far from it the
+ * merge thread recomputes the norms into a {@link RenormalizedSegment} held
+ * on the heap, without rewriting the segment file.
+ * <p>
+ * Which files make up the index is recorded in an {@link IndexManifest};
+ * every file is forced to disk and renamed into place before a new manifest
+ * naming it is published the same way, so a crash or a concurrent reader
+ * never sees a partial index. Searches run on an {@link IndexSnapshot} taken
+ * with {@link #acquire()}; files that drop out of the index are deleted once
+ * the last snapshot using them is closed.
+ */
+public class SegmentedIndex {
+
+    private static final Logger LOGGER = Logger.getLogger(SegmentedIndex.class.getName());
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String LIVE_DOCS_EXTENSION = ".del";
+    // relative change of the collection size after which a segment's norms are recomputed
+    private static final double NORM_DRIFT = 0.1;
+
+    // one merge thread for all indexes keeps background I/O bounded
+    private static final ExecutorService MERGES = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "segment-merge");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // refreshes only build small in-memory segments, so they get their own thread and never wait for a merge
+    private static final ScheduledExecutorService REFRESHES = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "segment-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Path directory;
+    private final IndexFormat format;
+    private final TieredMergePolicy mergePolicy;
+    private final int flushDocuments;
+
+    private final Object writeLock = new Object();
+    private volatile List<SegmentFile> segments = List.of();
+    private volatile IndexSnapshot current;
+    // snapshots holding each file; guarded by itself
+    private final Map<Path, Integer> fileReferences = new HashMap<>();
+    // guarded by writeLock
+    private long version;
+    private final Set<Segment> merging = Collections.newSetFromMap(new IdentityHashMap<>());
+    private Changes buffered = new Changes();
+    // what was added and deleted since each running rebuild started its scan
+    private final List<Changes> rebuilds = new ArrayList<>();
+    private long nextGeneration;
+
+    // Writes a complete segment file to the given path
+    @FunctionalInterface
+    public interface SegmentWriter {
+        void write(Path path) throws IOException;
+    }
+
+    // Added and deleted documents by name; adding a name after deleting it wins, deleting it after adding it drops the add
+    private static final class Changes {
+        private final Map<String, Map<String, Integer>> added = new HashMap<>();
+        private final Set<String> deleted = new HashSet<>();
+
+        void add(Map<String, Map<String, Integer>> termFrequencies) {
+            added.putAll(termFrequencies);
+        }
+
+        void delete(Collection<String> names) {
+            added.keySet().removeAll(names);
+            deleted.addAll(names);
+        }
+
+        // Applies other's changes after these
+        void addAll(Changes other) {
+            delete(other.deleted);
+            add(other.added);
+        }
+
+        boolean isEmpty() {
+            return added.isEmpty() && deleted.isEmpty();
+        }
+
+        int size() {
+            return added.size() + deleted.size();
+        }
+    }
+
+    // path is null for a refreshed segment that has not been flushed to disk yet; liveDocs is null until a delete;
+    // normDocuments is the collection size the norms were computed for, -1 for a segment opened from disk
+    private record SegmentFile(Path path, long generation, Segment segment, LiveDocs liveDocs, Path liveDocsPath,
+                               int normDocuments) {
+        boolean inMemory() {
+            return path == null;
+        }
+
+        SegmentFile withSegment(Segment replacement, int documents) {
+            return new SegmentFile(path, generation, replacement, liveDocs, liveDocsPath, documents);
+        }
+
+        boolean hasStaleNorms(int documentCount) {
+            return normDocuments < 0 || Math.abs(documentCount - normDocuments) > NORM_DRIFT * documentCount;
+        }
+
+        LiveSegment live() {
+            return new LiveSegment(segment, liveDocs);
+        }
+
+        int deletedCount() {
+            return liveDocs == null ? 0 : liveDocs.getDeletedCount();
+        }
+
+        int liveCount() {
+            return segment.getDocumentCount() - deletedCount();
+        }
+    }
+
+    private SegmentedIndex(Path directory, IndexFormat format, TieredMergePolicy mergePolicy, int flushDocuments,
+                           long version, long nextGeneration) {
+        this.directory = directory;
+        this.format = format;
+        this.mergePolicy = mergePolicy;
+        this.flushDocuments = flushDocuments;
+        this.version = version;
+        this.nextGeneration = nextGeneration;
+    }
+
+    /**
+     * Opens the segments found in directory, creating it if needed. Buffered
+     * documents are refreshed every refreshIntervalMillis (never when it is not
+     * positive), and in-memory segments are flushed to a file once they hold
+     * flushDocuments documents.
+     */
+    public static SegmentedIndex open(Path directory, IndexFormat format, TieredMergePolicy mergePolicy,
+                                      long refreshIntervalMillis, int flushDocuments) {
+        try {
+            Files.createDirectories(directory);
+            IndexManifest manifest = IndexManifest.read(directory);
+            List<Path> files;
+            try (Stream<Path> listing = Files.list(directory)) {
+                files = listing.toList();
+            }
+
+            List<SegmentFile> found = new ArrayList<>();
+            if (manifest != null) {
+                for (IndexManifest.Entry entry : manifest.segments()) {
+                    found.add(openSegment(directory.resolve(entry.segmentFile()),
+                            entry.liveDocsFile() == null ? null : directory.resolve(entry.liveDocsFile())));
+                }
+            } else {
+                // written before manifests existed: every complete segment file is part of the index
+                for (Path file : files) {
+                    String name = file.getFileName().toString();
+                    if (name.startsWith(SEGMENT_PREFIX) && IndexFormat.of(file) != null) {
+                        Path liveDocsPath = file.resolveSibling(name.substring(0, name.indexOf('.')) + LIVE_DOCS_EXTENSION);
+                        found.add(openSegment(file, Files.exists(liveDocsPath) ? liveDocsPath : null));
+                    }
+                }
+                found.sort((a, b) -> Long.compare(a.generation(), b.generation()));
+            }
+
+            // anything else was never published or has been replaced
+            Set<Path> published = new HashSet<>();
+            for (SegmentFile file : found) {
+                published.add(file.path());
+                if (file.liveDocsPath() != null) {
+                    published.add(file.liveDocsPath());
+                }
+            }
+            long maxGeneration = 0;
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.startsWith(SEGMENT_PREFIX) && !name.endsWith(DurableFiles.TEMPORARY_SUFFIX)) {
+                    maxGeneration = Math.max(maxGeneration, maxGeneration(name));
+                }
+                if (name.endsWith(DurableFiles.TEMPORARY_SUFFIX)
+                        || name.startsWith(SEGMENT_PREFIX) && !published.contains(file)) {
+                    deleteLeftover(file);
+                }
+            }
+
+            SegmentedIndex index = new SegmentedIndex(directory, format, mergePolicy, flushDocuments,
+                    manifest == null ? 0 : manifest.version(), maxGeneration + 1);
+            synchronized (index.writeLock) {
+                index.publish(found);
+            }
+            index.scheduleMerge();
+            if (refreshIntervalMillis > 0) {
+                REFRESHES.scheduleWithFixedDelay(() -> {
+                    try {
+                        index.refresh();
+                    } catch (RuntimeException e) {
+                        LOGGER.log(Level.WARNING, "Segment refresh failed in " + directory, e);
+                    }
+                }, refreshIntervalMillis, refreshIntervalMillis, TimeUnit.MILLISECONDS);
+            }
+            return index;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open segmented index: " + directory, e);
+        }
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Pins the current version for a search: its segments and deletions stay
+     * as they are, and its files on disk, until the snapshot is closed.
+     */
+    public IndexSnapshot acquire() {
+        while (true) {
+            IndexSnapshot snapshot = current;
+            if (snapshot.tryAcquire()) {
+                return snapshot;
+            }
+        }
+    }
+
+    public long getVersion() {
+        return current.getVersion();
+    }
+
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    // Live documents
+    public int getDocumentCount() {
+        int count = 0;
+        for (SegmentFile file : segments) {
+            count += file.liveCount();
+        }
+        return count;
+    }
+
+    /**
+     * Buffers analyzed documents (name -> term frequencies). On the next
+     * refresh they become searchable and any copy already indexed under the
+     * same name is deleted, so adding an existing name updates it.
+     */
+    public void addDocuments(Map<String, Map<String, Integer>> termFrequencies) {
+        synchronized (writeLock) {
+            buffered.add(termFrequencies);
+            for (Changes rebuild : rebuilds) {
+                rebuild.add(termFrequencies);
+            }
+        }
+    }
+
+    // Deletes documents by name; like additions, this becomes visible on the next refresh
+    public void deleteDocuments(Collection<String> names) {
+        synchronized (writeLock) {
+            buffered.delete(names);
+            for (Changes rebuild : rebuilds) {
+                rebuild.delete(names);
+            }
+        }
+    }
+
+    public int getBufferedCount() {
+        synchronized (writeLock) {
+            return buffered.size();
+        }
+    }
+
+    // Applies buffered deletes and makes buffered documents searchable as an in-memory segment; returns how many
+    public int refresh() {
+        int refreshed;
+        synchronized (writeLock) {
+            if (buffered.isEmpty()) {
+                return 0;
+            }
+            refreshed = buffered.size();
+            publish(applyBuffered(segments));
+        }
+        flushOrMerge();
+        return refreshed;
+    }
+
+    /**
+     * The segments of current with the buffered deletes applied and the
+     * buffered documents added as a new in-memory segment, which empties the
+     * buffer. Called with writeLock held.
+     */
+    private List<SegmentFile> applyBuffered(List<SegmentFile> current) {
+        Changes changes = buffered;
+        buffered = new Changes();
+
+        // re-added names replace their older copies
+        Set<String> deletes = new HashSet<>(changes.deleted);
+        deletes.addAll(changes.added.keySet());
+        List<SegmentFile> next = applyDeletes(current, deletes);
+
+        if (!changes.added.isEmpty()) {
+            // norms use idf over the collection including the new documents; merges refresh them later
+            Map<String, Integer> newFrequencies = new HashMap<>();
+            for (Map<String, Integer> document : changes.added.values()) {
+                for (String term : document.keySet()) {
+                    newFrequencies.merge(term, 1, Integer::sum);
+                }
+            }
+            int documentCount = changes.added.size() + documentCount(next);
+            Map<String, Float> inverseDocumentFrequency = new HashMap<>();
+            for (Map.Entry<String, Integer> entry : newFrequencies.entrySet()) {
+                int documentFrequency = entry.getValue() + documentFrequency(next, entry.getKey());
+                inverseDocumentFrequency.put(entry.getKey(),
+                        TfIdfCalculator.calculateIdf(documentCount, documentFrequency));
+            }
+            Index index = Index.fromTermFrequencies(changes.added, inverseDocumentFrequency);
+            next.add(new SegmentFile(null, 0, index, null, null, documentCount));
+        }
+        return next;
+    }
+
+    // Flushes in-memory segments once they hold enough documents, otherwise looks for a merge
+    private void flushOrMerge() {
+        int inMemory = 0;
+        for (SegmentFile file : segments) {
+            if (file.inMemory()) {
+                inMemory += file.segment().getDocumentCount();
+            }
+        }
+        if (inMemory >= flushDocuments) {
+            MERGES.execute(() -> {
+                try {
+                    flushSegments();
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Segment flush failed in " + directory, e);
+                }
+            });
+        } else {
+            scheduleMerge();
+        }
+    }
+
+    // Refreshes, then writes every in-memory segment into one segment file; everything refreshed is on disk on return
+    public void flush() {
+        refresh();
+        flushSegments();
+        if (hasInMemorySegments()) {
+            // a background flush took the rest; it runs on MERGES, so waiting for the queue waits for it
+            try {
+                awaitMerges();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while flushing " + directory, e);
+            }
+            // and whatever it failed to write is written here
+            flushSegments();
+        }
+    }
+
+    private boolean hasInMemorySegments() {
+        for (SegmentFile file : segments) {
+            if (file.inMemory()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void flushSegments() {
+        List<SegmentFile> candidates = new ArrayList<>();
+        synchronized (writeLock) {
+            for (SegmentFile file : segments) {
+                if (file.inMemory() && merging.add(file.segment())) {
+                    candidates.add(file);
+                }
+            }
+        }
+        if (!candidates.isEmpty()) {
+            merge(candidates);
+            scheduleMerge();
+        }
+    }
+
+    /**
+     * Replaces every segment with the given index, as after a full rebuild.
+     * The new segment is complete on disk before it is published, and searches
+     * already running finish on the version they started with.
+     */
+    public void replaceAll(Index index) {
+        replaceAll(index::saveToFileAsBinary);
+    }
+
+    /**
+     * Replaces every segment with the one written by writer, for rebuilds that
+     * stream the index to disk instead of holding it on the heap.
+     * <p>
+     * The writer only sees documents stored before it scanned them, so
+     * documents added or deleted while it runs are recorded from the moment it
+     * starts, and applied on top of the new segment when it is published,
+     * together with the buffered changes the old segments had not taken in
+     * yet. Applying a change the rebuild already saw is harmless: an added
+     * name replaces its older copy, a deleted one stays deleted.
+     */
+    public void replaceAll(SegmentWriter writer) {
+        long generation;
+        Changes sinceStart = new Changes();
+        synchronized (writeLock) {
+            generation = nextGeneration++;
+            sinceStart.addAll(buffered);
+            rebuilds.add(sinceStart);
+        }
+        try {
+            SegmentFile replacement = write(writer, generation);
+            synchronized (writeLock) {
+                // everything still buffered was also recorded since the start, or taken in by the rebuild
+                buffered = sinceStart;
+                publish(applyBuffered(List.of(replacement)));
+            }
+        } finally {
+            synchronized (writeLock) {
+                rebuilds.remove(sinceStart);
+            }
+        }
+        flushOrMerge();
+    }
+
+    // Waits for the merges and flushes queued so far; background work on other indexes is waited for too
+    void awaitMerges() throws InterruptedException {
+        try {
+            MERGES.submit(() -> {
+            }).get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public void scheduleMerge() {
+        MERGES.execute(() -> {
+            try {
+                List<SegmentFile> candidates;
+                while (!(candidates = reserveMerge()).isEmpty()) {
+                    merge(candidates);
+                }
+                renormalize();
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Segment merge failed in " + directory, e);
+            }
+        });
+    }
+
+    // Copies of the segments with the named documents deleted; deletions of file segments go to new files
+    private List<SegmentFile> applyDeletes(List<SegmentFile> current, Set<String> names) {
+        List<SegmentFile> next = new ArrayList<>(current.size() + 1);
+        int[] docIds = new int[names.size()];
+        for (SegmentFile file : current) {
+            int count = 0;
+            for (String name : names) {
+                int docId = file.segment().getDocumentId(name);
+                if (docId >= 0) {
+                    docIds[count++] = docId;
+                }
+            }
+            LiveDocs liveDocs = file.liveDocs();
+            if (count > 0) {
+                liveDocs = (liveDocs == null ? LiveDocs.all(file.segment().getDocumentCount()) : liveDocs)
+                        .withDeleted(docIds, count);
+            }
+            if (liveDocs == file.liveDocs()) {
+                next.add(file);
+                continue;
+            }
+            Path liveDocsPath = null;
+            if (!file.inMemory()) {
+                liveDocsPath = directory.resolve(String.format("%s%06d_%06d%s",
+                        SEGMENT_PREFIX, file.generation(), nextGeneration++, LIVE_DOCS_EXTENSION));
+                liveDocs.write(liveDocsPath);
+            }
+            next.add(new SegmentFile(file.path(), file.generation(), file.segment(), liveDocs, liveDocsPath,
+                    file.normDocuments()));
+        }
+        return next;
+    }
+
+    private List<SegmentFile> reserveMerge() {
+        synchronized (writeLock) {
+            List<SegmentFile> available = new ArrayList<>();
+            for (SegmentFile file : segments) {
+                if (!file.inMemory() && !merging.contains(file.segment())) {
+                    available.add(file);
+                }
+            }
+            List<SegmentFile> candidates = mergePolicy.select(available,
+                    SegmentFile::liveCount, SegmentFile::deletedCount);
+            for (SegmentFile file : candidates) {
+                merging.add(file.segment());
+            }
+            return candidates;
+        }
+    }
+
+    private void merge(List<SegmentFile> candidates) {
+        IndexSnapshot pinned = null;
+        try {
+            List<SegmentFile> collection;
+            synchronized (writeLock) {
+                collection = segments;
+                for (SegmentFile file : candidates) {
+                    if (find(collection, file.segment()) == null) {
+                        // replaced by a full rebuild since they were reserved
+                        return;
+                    }
+                }
+                // keeps the collection's files in place while they are read without the lock
+                pinned = acquire();
+            }
+            List<LiveSegment> sources = new ArrayList<>(candidates.size());
+            for (SegmentFile file : candidates) {
+                sources.add(file.live());
+            }
+            Index index = SegmentMerger.merge(sources, collectionIdf(collection));
+            long generation;
+            synchronized (writeLock) {
+                generation = nextGeneration++;
+            }
+            // written without the lock, so additions are not held up by a large merge
+            SegmentFile merged = write(index, generation);
+            merged = merged.withSegment(merged.segment(), documentCount(collection));
+
+            synchronized (writeLock) {
+                List<SegmentFile> current = segments;
+                List<SegmentFile> next = new ArrayList<>(current.size());
+                Set<String> deletedMeanwhile = new HashSet<>();
+                int found = 0;
+                for (SegmentFile file : current) {
+                    SegmentFile source = find(candidates, file.segment());
+                    if (source == null) {
+                        next.add(file);
+                        continue;
+                    }
+                    found++;
+                    // documents deleted while the merge ran are still live in the merged segment
+                    if (file.liveDocs() != source.liveDocs()) {
+                        for (int docId = 0; docId < file.segment().getDocumentCount(); docId++) {
+                            if (source.live().isLive(docId) && !file.live().isLive(docId)) {
+                                deletedMeanwhile.add(file.segment().getDocumentName(docId));
+                            }
+                        }
+                    }
+                }
+                // a full rebuild may have replaced the sources while the merge ran
+                if (found != candidates.size()) {
+                    delete(merged.path());
+                    return;
+                }
+                next.addAll(applyDeletes(List.of(merged), deletedMeanwhile));
+                publish(next);
+            }
+        } finally {
+            if (pinned != null) {
+                pinned.close();
+            }
+            synchronized (writeLock) {
+                for (SegmentFile file : candidates) {
+                    merging.remove(file.segment());
+                }
+            }
+        }
+    }
+
+    /**
+     * Recomputes the norms of segments whose collection size has drifted, on
+     * the merge thread. A single segment was built with its own statistics,
+     * which are also the collection's, so it is left alone.
+     */
+    private void renormalize() {
+        List<SegmentFile> collection;
+        List<SegmentFile> stale = new ArrayList<>();
+        int documentCount;
+        IndexSnapshot pinned;
+        synchronized (writeLock) {
+            collection = segments;
+            if (collection.size() < 2) {
+                return;
+            }
+            documentCount = documentCount(collection);
+            for (SegmentFile file : collection) {
+                if (file.hasStaleNorms(documentCount) && merging.add(file.segment())) {
+                    stale.add(file);
+                }
+            }
+            if (stale.isEmpty()) {
+                return;
+            }
+            // the collection is read without the lock, so its files must stay in place
+            pinned = acquire();
+        }
+        try {
+            ToDoubleFunction<String> inverseDocumentFrequency = collectionIdf(collection);
+            Map<Segment, Segment> renormalized = new IdentityHashMap<>();
+            for (SegmentFile file : stale) {
+                renormalized.put(file.segment(), RenormalizedSegment.of(file.segment(), inverseDocumentFrequency));
+            }
+            synchronized (writeLock) {
+                // deletes may have been applied meanwhile, so the current entries are the ones updated
+                List<SegmentFile> next = new ArrayList<>(segments.size());
+                for (SegmentFile file : segments) {
+                    Segment replacement = renormalized.get(file.segment());
+                    next.add(replacement == null ? file : file.withSegment(replacement, documentCount));
+                }
+                publish(next);
+            }
+        } finally {
+            pinned.close();
+            synchronized (writeLock) {
+                for (SegmentFile file : stale) {
+                    merging.remove(file.segment());
+                }
+            }
+        }
+    }
+
+    private static SegmentFile find(List<SegmentFile> files, Segment segment) {
+        for (SegmentFile file : files) {
+            if (file.segment() == segment) {
+                return file;
+            }
+        }
+        return null;
+    }
+
+    // Deleted documents are counted like live ones until a merge drops them, as their postings still are
+    private static ToDoubleFunction<String> collectionIdf(List<SegmentFile> current) {
+        int total = documentCount(current);
+        return term -> TfIdfCalculator.calculateIdf(total, documentFrequency(current, term));
+    }
+
+    private static int documentCount(List<SegmentFile> current) {
+        int documentCount = 0;
+        for (SegmentFile file : current) {
+            documentCount += file.segment().getDocumentCount();
+        }
+        return documentCount;
+    }
+
+    private static int documentFrequency(List<SegmentFile> current, String term) {
+        int documentFrequency = 0;
+        for (SegmentFile file : current) {
+            int termId = file.segment().getTermId(term);
+            if (termId >= 0) {
+                documentFrequency += file.segment().getDocumentFrequency(termId);
+            }
+        }
+        return documentFrequency;
+    }
+
+    /**
+     * Makes next the current version: the manifest is rewritten when the set of
+     * files changed, then a new snapshot replaces the current one, which is
+     * released once the searches holding it are done. Called with writeLock held.
+     */
+    private void publish(List<SegmentFile> next) {
+        List<IndexManifest.Entry> entries = manifestEntries(next);
+        long nextVersion = version + 1;
+        if (current == null || !entries.equals(manifestEntries(segments))) {
+            try {
+                new IndexManifest(nextVersion, entries).write(directory);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to publish index manifest: " + directory, e);
+            }
+        }
+        version = nextVersion;
+
+        List<LiveSegment> live = new ArrayList<>(next.size());
+        List<Path> files = new ArrayList<>();
+        for (SegmentFile file : next) {
+            live.add(file.live());
+            if (!file.inMemory()) {
+                files.add(file.path());
+            }
+            if (file.liveDocsPath() != null) {
+                files.add(file.liveDocsPath());
+            }
+        }
+        IndexSnapshot snapshot = new IndexSnapshot(nextVersion, live, files, this::releaseFiles);
+        synchronized (fileReferences) {
+            for (Path file : files) {
+                fileReferences.merge(file, 1, Integer::sum);
+            }
+        }
+        segments = Collections.unmodifiableList(next);
+        IndexSnapshot previous = current;
+        current = snapshot;
+        if (previous != null) {
+            previous.release();
+        }
+    }
+
+    private static List<IndexManifest.Entry> manifestEntries(List<SegmentFile> files) {
+        List<IndexManifest.Entry> entries = new ArrayList<>(files.size());
+        for (SegmentFile file : files) {
+            if (!file.inMemory()) {
+                entries.add(new IndexManifest.Entry(file.path().getFileName().toString(),
+                        file.liveDocsPath() == null ? null : file.liveDocsPath().getFileName().toString()));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Called when a snapshot is no longer used; files no snapshot refers to
+     * any more are deleted. Background work that reads segments without the
+     * write lock holds a snapshot too, so nothing is deleted under it.
+     */
+    private void releaseFiles(List<Path> files) {
+        List<Path> unused = new ArrayList<>();
+        synchronized (fileReferences) {
+            for (Path file : files) {
+                if (fileReferences.merge(file, -1, Integer::sum) == 0) {
+                    fileReferences.remove(file);
+                    unused.add(file);
+                }
+            }
+        }
+        for (Path file : unused) {
+            delete(file);
+        }
+    }
+
+    private static SegmentFile openSegment(Path path, Path liveDocsPath) {
+        Segment segment = Segment.open(path);
+        LiveDocs liveDocs = liveDocsPath == null ? null : LiveDocs.read(liveDocsPath, segment.getDocumentCount());
+        return new SegmentFile(path, generation(path.getFileName().toString()), segment, liveDocs, liveDocsPath, -1);
+    }
+
+    // Forced to disk under a temporary name and renamed into place; only published once a manifest names it
+    private SegmentFile write(Index index, long generation) {
+        return write(index::saveToFileAsBinary, generation);
+    }
+
+    private SegmentFile write(SegmentWriter writer, long generation) {
+        Path path = directory.resolve(String.format("%s%06d%s", SEGMENT_PREFIX, generation, format.extension()));
+        Path temporary = DurableFiles.temporaryFor(path);
+        try {
+            writer.write(temporary);
+            DurableFiles.publish(temporary, path);
+        } catch (IOException e) {
+            delete(temporary);
+            throw new RuntimeException("Failed to write segment: " + path, e);
+        } catch (RuntimeException e) {
+            // a cancelled rebuild leaves nothing behind
+            delete(temporary);
+            throw e;
+        }
+        // a rebuild's own statistics; merges pass the collection size they used
+        Segment segment = Segment.open(path);
+        return new SegmentFile(path, generation, segment, null, null, segment.getDocumentCount());
+    }
+
+    // A file or the run directory of an interrupted rebuild
+    private static void deleteLeftover(Path file) throws IOException {
+        if (Files.isDirectory(file)) {
+            try (Stream<Path> children = Files.list(file)) {
+                for (Path child : children.toList()) {
+                    Files.deleteIfExists(child);
+                }
+            }
+        }
+        Files.deleteIfExists(file);
+    }
+
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not delete index file " + file, e);
+        }
+    }
+
+    // segment-<generation>.<ext> or segment-<generation>_<deletes generation>.del
+    private static long generation(String fileName) {
+        int end = fileName.indexOf('_');
+        String digits = fileName.substring(SEGMENT_PREFIX.length(), end >= 0 ? end : fileName.indexOf('.'));
+        try {
+            return Long.parseLong(digits);
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("Unexpected segment file name: " + fileName, e);
+        }
+    }
+
+    private static long maxGeneration(String fileName) {
+        int separator = fileName.indexOf('_');
+        if (separator < 0) {
+            return generation(fileName);
+        }
+        String digits = fileName.substring(separator + 1, fileName.indexOf('.'));
+        try {
+            return Math.max(generation(fileName), Long.parseLong(digits));
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("Unexpected segment file name: " + fileName, e);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package io.zaaim.arindexer.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+/**
+ * Chooses which segments of an index to merge. Segments are grouped into tiers
+ * by document count, each tier {@code mergeFactor} times larger than the one
+ * below; once a tier holds {@code mergeFactor} segments they are merged into
+ * one segment of the next tier. A document is therefore rewritten about
+ * log(N) / log(mergeFactor) times over its life, and an index of N documents
+ * keeps at most mergeFactor - 1 segments per tier. Tiers go by live documents;
+ * a segment that is mostly deleted documents is rewritten on its own when no
+ * tier is full, so deletes do not keep occupying space indefinitely.
+ */
+public class TieredMergePolicy {
+
+    private final int mergeFactor;
+    // segments up to this size all share the lowest tier
+    private final int floorDocuments;
+
+    public TieredMergePolicy(int mergeFactor, int floorDocuments) {
+        if (mergeFactor < 2) {
+            throw new IllegalArgumentException("Merge factor must be at least 2: " + mergeFactor);
+        }
+        this.mergeFactor = mergeFactor;
+        this.floorDocuments = Math.max(floorDocuments, 1);
+    }
+
+    public int getMergeFactor() {
+        return mergeFactor;
+    }
+
+    public int tier(int documentCount) {
+        int tier = 0;
+        long limit = floorDocuments;
+        while (documentCount > limit) {
+            limit *= mergeFactor;
+            tier++;
+        }
+        return tier;
+    }
+
+    // The smallest segments of the lowest full tier by live documents, or an empty list when nothing needs merging
+    public <T> List<T> select(List<T> segments, ToIntFunction<T> documentCount, ToIntFunction<T> deletedCount) {
+        List<T> sorted = new ArrayList<>(segments);
+        sorted.sort(Comparator.comparingInt(documentCount));
+        int from = 0;
+        while (from < sorted.size()) {
+            int tier = tier(documentCount.applyAsInt(sorted.get(from)));
+            int to = from;
+            while (to < sorted.size() && tier(documentCount.applyAsInt(sorted.get(to))) == tier) {
+                to++;
+            }
+            if (to - from >= mergeFactor) {
+                return new ArrayList<>(sorted.subList(from, from + mergeFactor));
+            }
+            from = to;
+        }
+        for (T segment : sorted) {
+            if (deletedCount.applyAsInt(segment) > documentCount.applyAsInt(segment)) {
+                return List.of(segment);
+            }
+        }
+        return List.of();
+    }
+}
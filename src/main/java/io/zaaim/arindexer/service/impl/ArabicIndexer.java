@@ -2,39 +2,84 @@ package io.zaaim.arindexer.service.impl;
 
 import io.zaaim.arindexer.model.Index;
 import io.zaaim.arindexer.service.Indexer;
-import io.zaaim.arindexer.util.TextProcessor;
+import io.zaaim.arindexer.service.IndexingProgress;
 import io.zaaim.arindexer.util.TfIdfCalculator;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class ArabicIndexer implements Indexer {
 
+    private final IndexingPipeline pipeline;
+
+    public ArabicIndexer() {
+        this(new IndexingProgress());
+    }
+
+    // Reads report to progress, and cancelling it stops the indexer at the next document
+    public ArabicIndexer(IndexingProgress progress) {
+        this.pipeline = IndexingPipeline.configured(progress);
+    }
+
     @Override
     public Index createIndex(Path indexPath) throws IOException {
+        return createIndex(indexPath, null);
+    }
+
+    // The whole index is built on the heap before it is written
+    @Override
+    public void writeIndex(Path indexPath, Path output, FileListener files) throws IOException {
+        createIndex(indexPath, files).saveToFileAsBinary(output);
+    }
+
+    private Index createIndex(Path indexPath, FileListener files) throws IOException {
         if (!Files.exists(indexPath) || !Files.isDirectory(indexPath)) {
             throw new IOException("Index path does not exist or is not a directory: " + indexPath);
         }
 
-        Map<String, Map<String, Integer>> invertedIndex = Files.walk(indexPath)
-                .filter(Files::isRegularFile)
-                .parallel()
-                .filter(path -> path.toString().endsWith(".txt"))
-                .map(path -> {
-                    try {
-                        String content = Files.readString(path);
-                        String fileName = indexPath.relativize(path).toString();
-                        Map<String, Integer> termFrequency = TextProcessor.processDocument(content);
-                        return Map.entry(fileName, termFrequency);
-                    } catch (IOException e) {
-                        throw new RuntimeException("Failed to process file: " + path, e);
-                    }
-                })
-                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
-
-        return new Index(TfIdfCalculator.calculateTfIdf(invertedIndex));
+        String[] documents;
+        try (Stream<Path> found = Files.walk(indexPath)) {
+            documents = found.filter(Files::isRegularFile)
+                    .filter(path -> path.toString().endsWith(".txt"))
+                    .map(path -> indexPath.relativize(path).toString())
+                    .toArray(String[]::new);
+        }
+
+        // each inverter thread fills its own maps; they are only combined once the pipeline is done
+        List<Accumulator> accumulators = pipeline.run(indexPath, documents, files, () -> new Accumulator(documents));
+        Map<String, Map<String, Integer>> invertedIndex = new HashMap<>();
+        Map<String, Integer> documentFrequency = new HashMap<>();
+        for (Accumulator accumulator : accumulators) {
+            invertedIndex.putAll(accumulator.termFrequencies);
+            accumulator.documentFrequency.forEach((term, count) -> documentFrequency.merge(term, count, Integer::sum));
+        }
+
+        Map<String, Float> inverseDocumentFrequency = new HashMap<>();
+        documentFrequency.forEach((term, count) ->
+                inverseDocumentFrequency.put(term, TfIdfCalculator.calculateIdf(documents.length, count)));
+        return Index.fromTermFrequencies(invertedIndex, inverseDocumentFrequency);
+    }
+
+    private static final class Accumulator implements IndexingPipeline.Inverter {
+        private final String[] documents;
+        private final Map<String, Map<String, Integer>> termFrequencies = new HashMap<>();
+        private final Map<String, Integer> documentFrequency = new HashMap<>();
+
+        Accumulator(String[] documents) {
+            this.documents = documents;
+        }
+
+        @Override
+        public void accept(int docId, Map<String, Integer> termFrequency) {
+            termFrequencies.put(documents[docId], termFrequency);
+            for (String term : termFrequency.keySet()) {
+                documentFrequency.merge(term, 1, Integer::sum);
+            }
+        }
     }
 }
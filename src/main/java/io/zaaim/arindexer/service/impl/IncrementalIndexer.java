@@ -0,0 +1,164 @@
+package io.zaaim.arindexer.service.impl;
+
+import io.zaaim.arindexer.service.Indexer;
+import io.zaaim.arindexer.service.IndexingProgress;
+import io.zaaim.arindexer.service.SegmentedIndex;
+import io.zaaim.arindexer.storage.AnalysisCache;
+import io.zaaim.arindexer.storage.CorpusManifest;
+import io.zaaim.arindexer.util.Constants;
+import io.zaaim.arindexer.util.TextProcessor;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Brings a segmented index up to date with the corpus directory it was built
+ * from. The files are compared against the {@link CorpusManifest} stored with
+ * the index: new and changed files are analyzed and added, which replaces
+ * their older copies, and removed files are deleted. Without a manifest, when
+ * the analysis chain changed since it was written, or when asked to, the
+ * index is rebuilt from scratch.
+ */
+public class IncrementalIndexer {
+
+    // analyzed documents handed to the index at a time, so a large change set is not buffered whole
+    private static final int BATCH_DOCUMENTS = 256;
+
+    private final Indexer fullIndexer;
+    private final IndexingPipeline pipeline;
+    private final IndexingProgress progress;
+
+    // fullIndexer should report to the same progress
+    public IncrementalIndexer(Indexer fullIndexer, IndexingProgress progress) {
+        this.fullIndexer = fullIndexer;
+        this.pipeline = IndexingPipeline.configured(progress);
+        this.progress = progress;
+    }
+
+    public record Result(boolean rebuilt, int added, int changed, int removed, int unchanged) {
+    }
+
+    public Result reindex(Path corpus, SegmentedIndex index, boolean rebuild) throws IOException {
+        if (!Files.exists(corpus) || !Files.isDirectory(corpus)) {
+            throw new IOException("Index path does not exist or is not a directory: " + corpus);
+        }
+        CorpusManifest previous = rebuild ? null : CorpusManifest.read(index.getDirectory());
+        if (previous != null && previous.analysisVersion() != TextProcessor.ANALYSIS_VERSION) {
+            // unchanged files would keep terms the current analysis no longer produces
+            previous = null;
+        }
+        if (previous == null) {
+            // the indexer reads and hashes every file anyway, so the manifest is built from what it reports
+            Map<String, CorpusManifest.Entry> current = new ConcurrentHashMap<>();
+            index.replaceAll(path -> fullIndexer.writeIndex(corpus, path, (document, size, modifiedMillis, hash) ->
+                    current.put(document, new CorpusManifest.Entry(size, modifiedMillis, hash))));
+            // changes made while the rebuild ran are published in memory; they go to disk before the manifest
+            index.flush();
+            new CorpusManifest(current, TextProcessor.ANALYSIS_VERSION).write(index.getDirectory());
+            trimCache();
+            return new Result(true, current.size(), 0, 0, 0);
+        }
+        progress.setPhase("scanning");
+
+        // attributes are taken before anything is read, so a file changing during the reindex is picked up next time
+        Map<String, BasicFileAttributes> found = new TreeMap<>();
+        try (Stream<Path> files = Files.walk(corpus)) {
+            for (Path path : files.filter(path -> path.toString().endsWith(".txt")).toList()) {
+                BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                if (attributes.isRegularFile()) {
+                    found.put(corpus.relativize(path).toString(), attributes);
+                }
+            }
+        }
+
+        Map<String, CorpusManifest.Entry> current = new HashMap<>();
+        List<String> added = new ArrayList<>();
+        List<String> changed = new ArrayList<>();
+        for (Map.Entry<String, BasicFileAttributes> file : found.entrySet()) {
+            String name = file.getKey();
+            BasicFileAttributes attributes = file.getValue();
+            progress.checkCancelled();
+            CorpusManifest.Entry known = previous.files().get(name);
+            if (known != null && known.sameAttributes(attributes)) {
+                current.put(name, known);
+                continue;
+            }
+            String hash = CorpusManifest.hash(corpus.resolve(name));
+            current.put(name, new CorpusManifest.Entry(attributes.size(), attributes.lastModifiedTime().toMillis(), hash));
+            if (known == null) {
+                added.add(name);
+            } else if (!known.hash().equals(hash)) {
+                changed.add(name);
+            }
+        }
+
+        List<String> removed = new ArrayList<>();
+        for (String name : previous.files().keySet()) {
+            if (!found.containsKey(name)) {
+                removed.add(name);
+            }
+        }
+
+        List<String> analyze = new ArrayList<>(added);
+        analyze.addAll(changed);
+        String[] documents = analyze.toArray(new String[0]);
+        progress.setPhase("analyzing");
+        pipeline.run(corpus, documents, () -> new Batch(documents, index));
+        progress.setPhase("publishing");
+        index.deleteDocuments(removed);
+        // refresh() only publishes in memory; the manifest may only list files whose changes are on disk
+        index.flush();
+
+        // a crash before this line leaves the old manifest, so the same files are reindexed on the next run
+        new CorpusManifest(current, TextProcessor.ANALYSIS_VERSION).write(index.getDirectory());
+        trimCache();
+        return new Result(false, added.size(), changed.size(), removed.size(),
+                found.size() - added.size() - changed.size());
+    }
+
+    // Other indexes share the cache, so it is only brought back within its budget, never pruned to this corpus
+    private static void trimCache() throws IOException {
+        AnalysisCache cache = IndexingPipeline.configuredCache();
+        if (cache != null) {
+            cache.trim(Constants.ANALYSIS_CACHE_MAX_BYTES);
+        }
+    }
+
+    // Hands analyzed documents to the index in batches; re-adding a name replaces the older copy
+    private static final class Batch implements IndexingPipeline.Inverter {
+        private final String[] documents;
+        private final SegmentedIndex index;
+        private Map<String, Map<String, Integer>> pending = new HashMap<>();
+
+        Batch(String[] documents, SegmentedIndex index) {
+            this.documents = documents;
+            this.index = index;
+        }
+
+        @Override
+        public void accept(int docId, Map<String, Integer> termFrequency) {
+            pending.put(documents[docId], termFrequency);
+            if (pending.size() >= BATCH_DOCUMENTS) {
+                finish();
+            }
+        }
+
+        @Override
+        public void finish() {
+            if (!pending.isEmpty()) {
+                index.addDocuments(pending);
+                index.refresh();
+                pending = new HashMap<>();
+            }
+        }
+    }
+}
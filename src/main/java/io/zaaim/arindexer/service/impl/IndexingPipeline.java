@@ -0,0 +1,243 @@
+package io.zaaim.arindexer.service.impl;
+
+import io.zaaim.arindexer.service.Indexer;
+import io.zaaim.arindexer.service.IndexingProgress;
+import io.zaaim.arindexer.storage.AnalysisCache;
+import io.zaaim.arindexer.storage.CorpusManifest;
+import io.zaaim.arindexer.util.Constants;
+import io.zaaim.arindexer.util.TextProcessor;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Indexing as three stages connected by bounded queues: readers load
+ * documents from disk, analyzers tokenize, drop stop words and stem, and
+ * inverters add the analyzed documents to their own accumulator. Each stage
+ * has its own number of threads, and a full queue holds back the stage that
+ * feeds it, so I/O and analysis overlap without reading ahead of what the
+ * CPUs can process. Files are decoded as UTF-8 chunk by chunk during analysis;
+ * large ones are not read ahead at all but streamed from disk by the analyzer,
+ * so a book-sized file takes no more memory than a short one.
+ */
+final class IndexingPipeline {
+
+    /**
+     * Per-thread sink of the inversion stage. Only its own thread calls
+     * {@link #accept}; {@link #finish} is called once that thread has no more
+     * documents, and the accumulators are merged by the caller afterwards.
+     */
+    interface Inverter {
+        void accept(int docId, Map<String, Integer> termFrequency) throws IOException;
+
+        default void finish() throws IOException {
+        }
+    }
+
+    // content is null for a file the analyzer streams itself; hash is null when neither a cache nor a listener needs it
+    private record Read(int docId, Path path, byte[] content, String hash) {
+    }
+
+    private record Analyzed(int docId, Map<String, Integer> termFrequency) {
+    }
+
+    // end of input, one per consumer thread
+    private static final Read NO_MORE_READS = new Read(-1, null, null, null);
+    // larger files are streamed by the analyzer instead of being queued whole
+    private static final long STREAMING_THRESHOLD_BYTES = 1 << 20;
+    private static final Analyzed NO_MORE_ANALYZED = new Analyzed(-1, null);
+
+    private final int readers;
+    private final int analyzers;
+    private final int inverters;
+    private final int queueCapacity;
+    private final IndexingProgress progress;
+    private final AnalysisCache cache;
+
+    // cache may be null, every document is then analyzed
+    IndexingPipeline(int readers, int analyzers, int inverters, int queueCapacity, IndexingProgress progress,
+                     AnalysisCache cache) {
+        this.readers = Math.max(1, readers);
+        this.analyzers = Math.max(1, analyzers);
+        this.inverters = Math.max(1, inverters);
+        this.queueCapacity = Math.max(1, queueCapacity);
+        this.progress = progress;
+        this.cache = cache;
+    }
+
+    // Stages sized by the indexer settings, with the configured analysis cache
+    static IndexingPipeline configured(IndexingProgress progress) {
+        return new IndexingPipeline(Constants.INDEXER_READ_THREADS, Constants.INDEXER_ANALYSIS_THREADS,
+                Constants.INDEXER_INVERSION_THREADS, Constants.INDEXER_QUEUE_CAPACITY, progress, configuredCache());
+    }
+
+    static AnalysisCache configuredCache() {
+        return Constants.ANALYSIS_CACHE_DIR.isEmpty() ? null
+                : new AnalysisCache(Paths.get(Constants.ANALYSIS_CACHE_DIR).toAbsolutePath(), TextProcessor.ANALYSIS_VERSION);
+    }
+
+    int getInverterCount() {
+        return inverters;
+    }
+
+    <T extends Inverter> List<T> run(Path root, String[] documents, Supplier<T> inverterFactory) throws IOException {
+        return run(root, documents, null, inverterFactory);
+    }
+
+    /**
+     * Runs every document of root through the stages; documents are relative
+     * to root and their index in the array is their doc id. Each file is
+     * reported to files, when not null, by the reader that hashed it. Returns
+     * once every inverter has finished, with the inverters in thread order.
+     */
+    <T extends Inverter> List<T> run(Path root, String[] documents, Indexer.FileListener files,
+                                     Supplier<T> inverterFactory) throws IOException {
+        BlockingQueue<Read> reads = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<Analyzed> analyzed = new ArrayBlockingQueue<>(queueCapacity);
+        AtomicInteger nextDocument = new AtomicInteger();
+        AtomicInteger readersLeft = new AtomicInteger(readers);
+        AtomicInteger analyzersLeft = new AtomicInteger(analyzers);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        progress.addFilesTotal(documents.length);
+
+        for (int i = 0; i < readers; i++) {
+            threads.add(new Thread(() -> {
+                try {
+                    int docId;
+                    while ((docId = nextDocument.getAndIncrement()) < documents.length && failure.get() == null) {
+                        progress.checkCancelled();
+                        Path path = root.resolve(documents[docId]);
+                        try {
+                            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                            long size = attributes.size();
+                            boolean hashed = cache != null || files != null;
+                            byte[] content = null;
+                            String hash = null;
+                            if (size <= STREAMING_THRESHOLD_BYTES) {
+                                content = Files.readAllBytes(path);
+                                size = content.length;
+                                hash = hashed ? CorpusManifest.hash(content) : null;
+                            } else if (hashed) {
+                                hash = CorpusManifest.hash(path);
+                            }
+                            if (files != null) {
+                                files.fileRead(documents[docId], attributes.size(),
+                                        attributes.lastModifiedTime().toMillis(), hash);
+                            }
+                            progress.fileRead(size);
+                            reads.put(new Read(docId, path, content, hash));
+                        } catch (IOException e) {
+                            throw new RuntimeException("Failed to process file: " + path, e);
+                        }
+                    }
+                    if (readersLeft.decrementAndGet() == 0) {
+                        for (int j = 0; j < analyzers; j++) {
+                            reads.put(NO_MORE_READS);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "index-read-" + i));
+        }
+        for (int i = 0; i < analyzers; i++) {
+            threads.add(new Thread(() -> {
+                try {
+                    Read read;
+                    while ((read = reads.take()) != NO_MORE_READS) {
+                        Map<String, Integer> termFrequency = cache == null ? null : cache.get(read.hash());
+                        if (termFrequency == null) {
+                            termFrequency = analyze(read);
+                            if (cache != null) {
+                                cache.put(read.hash(), termFrequency);
+                            }
+                        }
+                        long tokens = 0;
+                        for (int count : termFrequency.values()) {
+                            tokens += count;
+                        }
+                        progress.tokensProcessed(tokens);
+                        analyzed.put(new Analyzed(read.docId(), termFrequency));
+                    }
+                    if (analyzersLeft.decrementAndGet() == 0) {
+                        for (int j = 0; j < inverters; j++) {
+                            analyzed.put(NO_MORE_ANALYZED);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "index-analyze-" + i));
+        }
+        List<T> accumulators = new ArrayList<>(inverters);
+        for (int i = 0; i < inverters; i++) {
+            T inverter = inverterFactory.get();
+            accumulators.add(inverter);
+            threads.add(new Thread(() -> {
+                try {
+                    Analyzed document;
+                    while ((document = analyzed.take()) != NO_MORE_ANALYZED) {
+                        inverter.accept(document.docId(), document.termFrequency());
+                    }
+                    inverter.finish();
+                } catch (IOException e) {
+                    throw new RuntimeException("Failed to invert documents", e);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "index-invert-" + i));
+        }
+
+        // the first failure stops every stage; threads blocked on a queue are interrupted
+        Thread.UncaughtExceptionHandler onFailure = (thread, e) -> {
+            if (failure.compareAndSet(null, e)) {
+                threads.forEach(Thread::interrupt);
+            }
+        };
+        for (Thread thread : threads) {
+            thread.setDaemon(true);
+            thread.setUncaughtExceptionHandler(onFailure);
+            thread.start();
+        }
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            threads.forEach(Thread::interrupt);
+            Thread.currentThread().interrupt();
+            throw new IOException("Indexing interrupted", e);
+        }
+
+        Throwable cause = failure.get();
+        if (cause instanceof RuntimeException runtime) {
+            throw runtime;
+        } else if (cause instanceof Error error) {
+            throw error;
+        }
+        return accumulators;
+    }
+
+    // Malformed UTF-8 fails the file, naming it
+    private static Map<String, Integer> analyze(Read read) {
+        try {
+            return read.content() != null
+                    ? TextProcessor.processDocument(read.content())
+                    : TextProcessor.processFile(read.path());
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to analyze file: " + read.path(), e);
+        }
+    }
+}
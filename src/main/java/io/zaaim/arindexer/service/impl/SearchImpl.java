@@ -1,88 +1,150 @@
 package io.zaaim.arindexer.service.impl;
 
-import io.zaaim.arindexer.model.Index;
+import io.zaaim.arindexer.model.LiveDocs;
+import io.zaaim.arindexer.model.LiveSegment;
+import io.zaaim.arindexer.model.PostingsIterator;
+import io.zaaim.arindexer.model.SearchHits;
+import io.zaaim.arindexer.model.Segment;
+import io.zaaim.arindexer.service.IndexRegistry;
+import io.zaaim.arindexer.service.IndexSnapshot;
 import io.zaaim.arindexer.service.Search;
-import io.zaaim.arindexer.util.Constants;
+import io.zaaim.arindexer.service.SearchMode;
+import io.zaaim.arindexer.util.ScoreAccumulator;
 import io.zaaim.arindexer.util.TextProcessor;
 import io.zaaim.arindexer.util.TfIdfCalculator;
+import io.zaaim.arindexer.util.TopK;
 
-import java.nio.file.Path;
 import java.util.*;
 
 public class SearchImpl implements Search {
 
     @Override
-    public Map<String, Float> search(String query, String indexRelativePath, int limit) {
-        try {
+    public SearchHits search(String query, String indexRelativePath, int limit, SearchMode mode) {
+        // the snapshot keeps this version's files in place even if a reindex publishes a new one meanwhile
+        try (IndexSnapshot snapshot = IndexRegistry.getInstance().acquire(indexRelativePath)) {
 
-            Path indexDir = Constants.INDEXES_DIR;
-            String[] files = indexDir.toFile().list();
-            if (files == null || files.length == 0) {
-                throw new RuntimeException("No index files found in directory: " + indexDir.toString());
-            }
+            List<LiveSegment> segments = snapshot.segments();
 
-            String indexPath = Arrays.stream(files).filter(str -> str.startsWith(indexRelativePath) && (str.endsWith(".ser") || str.endsWith(".xml")))
-                    .sorted((str1, str2) -> {
-                        Long l1 = indexDir.resolve(str1).toFile().lastModified();
-                        Long l2 = indexDir.resolve(str2).toFile().lastModified();
-                        return l2.compareTo(l1);
-                    }).findFirst().orElseThrow(() -> new RuntimeException("Index file not found: " + indexRelativePath));
-
-            Index index;
-            if (indexPath.endsWith(".ser")) {
-                index = Index.loadIndexFromFile(indexDir.resolve(indexPath));
-            } else {
-                index = Index.loadIndexFromXml(indexDir.resolve(indexPath));
+            // deleted documents count until a merge drops them, as their postings do for document frequency
+            int documentCount = 0;
+            for (LiveSegment segment : segments) {
+                documentCount += segment.segment().getDocumentCount();
             }
-
-
-            Map<String, Map<String, Float>> indexMap = index.getIndexMap();
-
-            if (indexMap == null || indexMap.isEmpty()) {
-                return Collections.emptyMap();
+            if (documentCount == 0) {
+                return SearchHits.empty();
             }
 
             // Process the query to get term frequencies
             Map<String, Integer> queryTermFreq = TextProcessor.processDocument(query);
 
-            // Calculate document frequency for IDF calculation
-            Map<String, Integer> documentFrequency = new HashMap<>();
-            for (Map<String, Float> docTerms : indexMap.values()) {
-                for (String term : docTerms.keySet()) {
-                    documentFrequency.put(term, documentFrequency.getOrDefault(term, 0) + 1);
+            // IDF comes from statistics summed over all segments, so scores do not depend on how documents are split
+            Map<String, Float> inverseDocumentFrequency = new HashMap<>();
+            for (String term : queryTermFreq.keySet()) {
+                int documentFrequency = 0;
+                for (LiveSegment segment : segments) {
+                    int termId = segment.segment().getTermId(term);
+                    if (termId >= 0) {
+                        documentFrequency += segment.segment().getDocumentFrequency(termId);
+                    }
+                }
+                if (documentFrequency > 0) {
+                    inverseDocumentFrequency.put(term, TfIdfCalculator.calculateIdf(documentCount, documentFrequency));
                 }
             }
 
             // Calculate TF-IDF for the query
-            Map<String, Float> queryTfIdf = TfIdfCalculator.calculateQueryTfIdf(
-                    queryTermFreq,
-                    documentFrequency,
-                    indexMap.size()
-            );
-
-            // Calculate cosine similarity with each document
-            Map<String, Float> similarities = new HashMap<>();
-            for (Map.Entry<String, Map<String, Float>> docEntry : indexMap.entrySet()) {
-                String docName = docEntry.getKey();
-
-                Map<String, Float> docVector = docEntry.getValue();
-                float similarity = TfIdfCalculator.calculateCosineSimilarity(queryTfIdf, docVector);
-
-                if (similarity > 0) {
-                    similarities.put(docName, similarity);
+            Map<String, Float> queryTfIdf = TfIdfCalculator.calculateQueryTfIdf(queryTermFreq, inverseDocumentFrequency);
+
+            float queryNorm = TfIdfCalculator.calculateNorm(queryTfIdf);
+            if (queryNorm == 0.0f) {
+                return SearchHits.empty();
+            }
+
+            // Keep the top `limit` cosine similarities in a bounded heap shared by all segments
+            TopK topK = new TopK(limit);
+            long postingsScored = 0;
+            long postingsSkipped = 0;
+            int[] docBases = new int[segments.size()];
+            int docBase = 0;
+            for (int s = 0; s < segments.size(); s++) {
+                Segment index = segments.get(s).segment();
+                LiveDocs liveDocs = segments.get(s).liveDocs();
+                docBases[s] = docBase;
+                docBase += index.getDocumentCount();
+
+                // postings hold normalized tf, so each term is scaled by query weight times idf
+                int[] queryTermIds = new int[inverseDocumentFrequency.size()];
+                float[] termFactors = new float[inverseDocumentFrequency.size()];
+                int queryTerms = 0;
+                for (Map.Entry<String, Float> idfEntry : inverseDocumentFrequency.entrySet()) {
+                    float factor = queryTfIdf.get(idfEntry.getKey()) * idfEntry.getValue();
+                    int termId = index.getTermId(idfEntry.getKey());
+                    if (termId >= 0 && factor != 0.0f) {
+                        queryTermIds[queryTerms] = termId;
+                        termFactors[queryTerms++] = factor;
+                    }
+                }
+                if (queryTerms == 0) {
+                    continue;
+                }
+                queryTermIds = Arrays.copyOf(queryTermIds, queryTerms);
+                termFactors = Arrays.copyOf(termFactors, queryTerms);
+
+                if (mode != SearchMode.EXHAUSTIVE && limit < index.getDocumentCount()) {
+                    WandScorer scorer = new WandScorer(index, liveDocs, docBases[s], queryTermIds, termFactors,
+                            queryNorm, mode == SearchMode.BLOCK_MAX_WAND);
+                    scorer.collect(topK);
+                    postingsScored += scorer.postingsScored();
+                    postingsSkipped += scorer.postingsSkipped();
+                } else {
+                    // also used when every document fits in the heap, as nothing could be pruned
+                    postingsScored += scoreExhaustively(index, liveDocs, docBases[s], queryTermIds, termFactors,
+                            queryNorm, topK);
                 }
             }
 
-            // Return top K most similar documents
-            return similarities.entrySet().stream()
-                    .sorted(Map.Entry.<String, Float>comparingByValue().reversed())
-                    .limit(limit)
-                    .collect(HashMap::new, (m, e) -> m.put(e.getKey(), e.getValue()), HashMap::putAll);
+            return new SearchHits(topK.toSortedList(docId -> documentName(segments, docBases, docId)),
+                    postingsScored, postingsSkipped);
 
         } catch (Exception e) {
             throw new RuntimeException("Failed to perform search", e);
         }
     }
 
+    // Maps an id across all searched segments back to the segment that holds it
+    private static String documentName(List<LiveSegment> segments, int[] docBases, int docId) {
+        int s = segments.size() - 1;
+        while (docBases[s] > docId) {
+            s--;
+        }
+        return segments.get(s).segment().getDocumentName(docId - docBases[s]);
+    }
+
+    // Term-at-a-time accumulation over every posting of the query terms; returns the number of postings scored
+    private static long scoreExhaustively(Segment index, LiveDocs liveDocs, int docBase, int[] termIds,
+                                          float[] termFactors, float queryNorm, TopK topK) {
+        long postingsScored = 0;
+        ScoreAccumulator dotProducts = ScoreAccumulator.forDocuments(index.getDocumentCount());
+        for (int i = 0; i < termIds.length; i++) {
+            PostingsIterator postings = index.postings(termIds[i]);
+            for (int docId = postings.nextDoc(); docId != PostingsIterator.NO_MORE_DOCS; docId = postings.nextDoc()) {
+                dotProducts.add(docId, termFactors[i] * postings.weight());
+            }
+            postingsScored += postings.cost();
+        }
 
+        for (int i = 0; i < dotProducts.touchedCount(); i++) {
+            int docId = dotProducts.touched(i);
+            if (liveDocs != null && !liveDocs.isLive(docId)) {
+                continue;
+            }
+            float similarity = TfIdfCalculator.calculateCosineSimilarity(
+                    dotProducts.score(docId), queryNorm, index.getDocumentNorm(docId));
+
+            if (similarity > 0) {
+                topK.offer(docBase + docId, similarity);
+            }
+        }
+        return postingsScored;
+    }
 }
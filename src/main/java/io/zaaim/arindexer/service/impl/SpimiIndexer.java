@@ -0,0 +1,431 @@
+package io.zaaim.arindexer.service.impl;
+
+import io.zaaim.arindexer.model.Index;
+import io.zaaim.arindexer.service.Indexer;
+import io.zaaim.arindexer.service.IndexingProgress;
+import io.zaaim.arindexer.storage.BinaryIndexFormat;
+import io.zaaim.arindexer.util.Constants;
+import io.zaaim.arindexer.util.TfIdfCalculator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Single-pass in-memory indexing (SPIMI) within a fixed memory budget.
+ * Documents go through an {@link IndexingPipeline}, and each inverter thread
+ * adds them to its own in-memory block of postings until the block's
+ * estimated size reaches its share of the budget; the block is then written
+ * out as a run with its terms sorted, and cleared. Once every document is read, the runs
+ * are merged term by term into the final index file, so only the document
+ * table and one term's postings are on the heap at any time.
+ *
+ * <pre>
+ * run: per term in sorted order
+ *      int posting count, UTF term, (int doc id, int term frequency)*
+ *      int 0
+ * </pre>
+ */
+public class SpimiIndexer implements Indexer {
+
+    private static final String RUNS_SUFFIX = ".runs";
+
+    // runs read at once by a merge; more are first merged in groups, so open files stay bounded
+    private static final int MERGE_FAN_IN = 64;
+
+    // rough heap cost of a term entry in the block, and of one posting
+    private static final int TERM_OVERHEAD_BYTES = 96;
+    private static final int POSTING_BYTES = 8;
+
+    private final long memoryBudgetBytes;
+    private final IndexingPipeline pipeline;
+    private final IndexingProgress progress;
+
+    public SpimiIndexer(long memoryBudgetBytes) {
+        this(memoryBudgetBytes, new IndexingProgress());
+    }
+
+    public SpimiIndexer(long memoryBudgetBytes, IndexingProgress progress) {
+        this(memoryBudgetBytes, Constants.INDEXER_READ_THREADS, Constants.INDEXER_ANALYSIS_THREADS,
+                Constants.INDEXER_INVERSION_THREADS, Constants.INDEXER_QUEUE_CAPACITY, progress);
+    }
+
+    public SpimiIndexer(long memoryBudgetBytes, int readThreads, int analysisThreads, int inversionThreads,
+                        int queueCapacity, IndexingProgress progress) {
+        this.memoryBudgetBytes = memoryBudgetBytes;
+        this.pipeline = new IndexingPipeline(readThreads, analysisThreads, inversionThreads, queueCapacity, progress,
+                IndexingPipeline.configuredCache());
+        this.progress = progress;
+    }
+
+    @Override
+    public Index createIndex(Path indexPath) throws IOException {
+        Path file = Files.createTempFile("index-", ".bin");
+        try {
+            writeIndex(indexPath, file);
+            return BinaryIndexFormat.read(file);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    // Indexes every .txt file under indexPath into a binary index file at output
+    @Override
+    public void writeIndex(Path indexPath, Path output, FileListener files) throws IOException {
+        if (!Files.exists(indexPath) || !Files.isDirectory(indexPath)) {
+            throw new IOException("Index path does not exist or is not a directory: " + indexPath);
+        }
+
+        // doc ids follow document names, the order every index keeps its documents in
+        String[] documents;
+        try (Stream<Path> found = Files.walk(indexPath)) {
+            documents = found.filter(Files::isRegularFile)
+                    .filter(path -> path.toString().endsWith(".txt"))
+                    .map(path -> indexPath.relativize(path).toString())
+                    .sorted()
+                    .toArray(String[]::new);
+        }
+
+        Path runsDirectory = output.resolveSibling(output.getFileName() + RUNS_SUFFIX);
+        Files.createDirectories(runsDirectory);
+        try {
+            int[] lengths = new int[documents.length];
+            progress.setPhase("analyzing");
+            List<Path> runs = invert(indexPath, documents, files, lengths, runsDirectory);
+            progress.setPhase("merging");
+            while (runs.size() > MERGE_FAN_IN) {
+                runs = mergeRuns(runs, runsDirectory);
+            }
+            float[] norms = computeNorms(runs, lengths);
+            progress.setPhase("writing");
+            try (BinaryIndexFormat.Writer writer = new BinaryIndexFormat.Writer(output, norms, lengths);
+                 RunMerger merger = new RunMerger(runs)) {
+                while (merger.next()) {
+                    progress.checkCancelled();
+                    int count = merger.size();
+                    writer.addTerm(merger.term(), TfIdfCalculator.calculateIdf(documents.length, count),
+                            Arrays.copyOf(merger.documents(), count), Arrays.copyOf(merger.frequencies(), count));
+                }
+                writer.finish(documents);
+            }
+        } finally {
+            try (Stream<Path> runs = Files.list(runsDirectory)) {
+                for (Path run : runs.toList()) {
+                    Files.deleteIfExists(run);
+                }
+            }
+            Files.deleteIfExists(runsDirectory);
+        }
+    }
+
+    // Runs the documents through the pipeline; every inverter spills its own runs within its share of the budget
+    private List<Path> invert(Path indexPath, String[] documents, FileListener files, int[] lengths,
+                              Path runsDirectory) throws IOException {
+        List<Path> runs = new ArrayList<>();
+        long blockBudget = memoryBudgetBytes / pipeline.getInverterCount();
+        AtomicInteger blocks = new AtomicInteger();
+        pipeline.run(indexPath, documents, files,
+                () -> new Block(blocks.getAndIncrement(), blockBudget, lengths, runsDirectory, runs));
+        if (runs.isEmpty()) {
+            runs.add(spill(Map.of(), runsDirectory.resolve("run-empty")));
+        }
+        return runs;
+    }
+
+    private static Path spill(Map<String, PostingBuffer> block, Path path) throws IOException {
+        String[] terms = block.keySet().toArray(new String[0]);
+        Arrays.sort(terms);
+        try (DataOutputStream out = runOutput(path)) {
+            for (String term : terms) {
+                PostingBuffer postings = block.get(term);
+                postings.sort();
+                writeTerm(out, term, postings.documents, postings.frequencies, postings.size);
+            }
+            out.writeInt(0);
+        }
+        return path;
+    }
+
+    // Merges groups of runs into fewer, larger runs
+    private List<Path> mergeRuns(List<Path> runs, Path runsDirectory) throws IOException {
+        List<Path> merged = new ArrayList<>();
+        for (int start = 0; start < runs.size(); start += MERGE_FAN_IN) {
+            List<Path> group = runs.subList(start, Math.min(start + MERGE_FAN_IN, runs.size()));
+            Path path = runsDirectory.resolve(String.format("%s-%06d", group.get(0).getFileName(), merged.size()));
+            try (RunMerger merger = new RunMerger(group); DataOutputStream out = runOutput(path)) {
+                while (merger.next()) {
+                    progress.checkCancelled();
+                    writeTerm(out, merger.term(), merger.documents(), merger.frequencies(), merger.size());
+                }
+                out.writeInt(0);
+            }
+            for (Path run : group) {
+                Files.delete(run);
+            }
+            merged.add(path);
+        }
+        return merged;
+    }
+
+    // Sorts postings by doc id, keeping each frequency with its document
+    private static void sortPostings(int[] documents, int[] frequencies, int count) {
+        long[] packed = new long[count];
+        for (int i = 0; i < count; i++) {
+            packed[i] = (long) documents[i] << 32 | frequencies[i];
+        }
+        Arrays.sort(packed);
+        for (int i = 0; i < count; i++) {
+            documents[i] = (int) (packed[i] >>> 32);
+            frequencies[i] = (int) packed[i];
+        }
+    }
+
+    private static DataOutputStream runOutput(Path path) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)));
+    }
+
+    private static void writeTerm(DataOutputStream out, String term, int[] documents, int[] frequencies, int count)
+            throws IOException {
+        out.writeInt(count);
+        out.writeUTF(term);
+        for (int i = 0; i < count; i++) {
+            out.writeInt(documents[i]);
+            out.writeInt(frequencies[i]);
+        }
+    }
+
+    // First merge pass: the TF-IDF norm of every document needs the final document frequency of its terms
+    private static float[] computeNorms(List<Path> runs, int[] lengths) throws IOException {
+        double[] squared = new double[lengths.length];
+        try (RunMerger merger = new RunMerger(runs)) {
+            while (merger.next()) {
+                int count = merger.size();
+                float idf = TfIdfCalculator.calculateIdf(lengths.length, count);
+                for (int i = 0; i < count; i++) {
+                    int docId = merger.documents()[i];
+                    float weight = (float) merger.frequencies()[i] / lengths[docId] * idf;
+                    squared[docId] += (double) weight * weight;
+                }
+            }
+        }
+        float[] norms = new float[lengths.length];
+        for (int docId = 0; docId < norms.length; docId++) {
+            norms[docId] = (float) Math.sqrt(squared[docId]);
+        }
+        return norms;
+    }
+
+    /**
+     * The in-memory block of one inverter thread. Documents reach it roughly
+     * in doc id order, so its runs overlap the runs of the other threads and
+     * postings are put back in order when they are spilled and merged.
+     */
+    private static final class Block implements IndexingPipeline.Inverter {
+        private final int id;
+        private final long budgetBytes;
+        private final int[] lengths;
+        private final Path runsDirectory;
+        private final List<Path> runs;
+        private final Map<String, PostingBuffer> postings = new HashMap<>();
+        private long bytes;
+        private int spilled;
+
+        Block(int id, long budgetBytes, int[] lengths, Path runsDirectory, List<Path> runs) {
+            this.id = id;
+            this.budgetBytes = budgetBytes;
+            this.lengths = lengths;
+            this.runsDirectory = runsDirectory;
+            this.runs = runs;
+        }
+
+        @Override
+        public void accept(int docId, Map<String, Integer> termFrequency) throws IOException {
+            int length = 0;
+            for (Map.Entry<String, Integer> entry : termFrequency.entrySet()) {
+                PostingBuffer buffer = postings.get(entry.getKey());
+                if (buffer == null) {
+                    buffer = new PostingBuffer();
+                    postings.put(entry.getKey(), buffer);
+                    bytes += TERM_OVERHEAD_BYTES + 2L * entry.getKey().length();
+                }
+                bytes += buffer.add(docId, entry.getValue());
+                length += entry.getValue();
+            }
+            // each doc id is written by one thread only, and read after the pipeline has joined
+            lengths[docId] = length;
+
+            if (bytes >= budgetBytes) {
+                finish();
+            }
+        }
+
+        // Spills whatever the block holds
+        @Override
+        public void finish() throws IOException {
+            if (postings.isEmpty()) {
+                return;
+            }
+            Path run = spill(postings, runsDirectory.resolve(String.format("run-%03d-%06d", id, spilled++)));
+            synchronized (runs) {
+                runs.add(run);
+            }
+            postings.clear();
+            bytes = 0;
+        }
+    }
+
+    // Postings of one term in the current block
+    private static final class PostingBuffer {
+        private int[] documents = new int[2];
+        private int[] frequencies = new int[2];
+        private int size;
+        private boolean sorted = true;
+
+        void sort() {
+            if (!sorted) {
+                sortPostings(documents, frequencies, size);
+                sorted = true;
+            }
+        }
+
+        // Returns the bytes the block grew by
+        int add(int docId, int frequency) {
+            int grown = 0;
+            if (size == documents.length) {
+                documents = Arrays.copyOf(documents, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+                grown = size * POSTING_BYTES;
+            }
+            sorted &= size == 0 || documents[size - 1] < docId;
+            documents[size] = docId;
+            frequencies[size] = frequency;
+            size++;
+            return grown;
+        }
+    }
+
+    // One run being merged, positioned on its current term
+    private static final class RunReader {
+        private final int run;
+        private final DataInputStream in;
+        private String term;
+        private int count;
+
+        RunReader(int run, Path path) throws IOException {
+            this.run = run;
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)));
+        }
+
+        // Reads the next term and its posting count, leaving the postings to be read
+        boolean advance() throws IOException {
+            count = in.readInt();
+            term = count == 0 ? null : in.readUTF();
+            return count != 0;
+        }
+    }
+
+    /**
+     * k-way merge of the runs by term. The postings of a term are appended run
+     * by run, and sorted by doc id when the runs' doc id ranges overlap.
+     */
+    private static final class RunMerger implements AutoCloseable {
+        private final List<RunReader> readers = new ArrayList<>();
+        private final PriorityQueue<RunReader> queue = new PriorityQueue<>(
+                Comparator.comparing((RunReader reader) -> reader.term).thenComparingInt(reader -> reader.run));
+        private String term;
+        private int[] documents = new int[16];
+        private int[] frequencies = new int[16];
+        private int size;
+
+        RunMerger(List<Path> runs) throws IOException {
+            try {
+                for (int run = 0; run < runs.size(); run++) {
+                    RunReader reader = new RunReader(run, runs.get(run));
+                    readers.add(reader);
+                    if (reader.advance()) {
+                        queue.add(reader);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                close();
+                throw e;
+            }
+        }
+
+        // Moves to the next term in sorted order, collecting its postings from every run
+        boolean next() throws IOException {
+            if (queue.isEmpty()) {
+                return false;
+            }
+            term = queue.peek().term;
+            size = 0;
+            boolean sorted = true;
+            while (!queue.isEmpty() && queue.peek().term.equals(term)) {
+                RunReader reader = queue.poll();
+                int count = reader.count;
+                if (size + count > documents.length) {
+                    int capacity = Math.max(documents.length * 2, size + count);
+                    documents = Arrays.copyOf(documents, capacity);
+                    frequencies = Arrays.copyOf(frequencies, capacity);
+                }
+                for (int i = 0; i < count; i++) {
+                    documents[size] = reader.in.readInt();
+                    sorted &= size == 0 || documents[size - 1] < documents[size];
+                    frequencies[size] = reader.in.readInt();
+                    size++;
+                }
+                if (reader.advance()) {
+                    queue.add(reader);
+                }
+            }
+            if (!sorted) {
+                sortPostings(documents, frequencies, size);
+            }
+            return true;
+        }
+
+        String term() {
+            return term;
+        }
+
+        int[] documents() {
+            return documents;
+        }
+
+        int[] frequencies() {
+            return frequencies;
+        }
+
+        int size() {
+            return size;
+        }
+
+        @Override
+        public void close() throws IOException {
+            IOException failure = null;
+            for (RunReader reader : readers) {
+                try {
+                    reader.in.close();
+                } catch (IOException e) {
+                    failure = failure == null ? e : failure;
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package io.zaaim.arindexer.service.impl;
+
+import io.zaaim.arindexer.model.LiveDocs;
+import io.zaaim.arindexer.model.PostingsIterator;
+import io.zaaim.arindexer.model.Segment;
+import io.zaaim.arindexer.util.TfIdfCalculator;
+import io.zaaim.arindexer.util.TopK;
+
+/**
+ * Document-at-a-time WAND evaluation of a cosine query over one segment.
+ * Every query term has an upper bound on what it can add to a score, taken
+ * from the per-term max impact stored in the index and the term's factor
+ * (query weight times collection idf). Cursors are kept sorted
+ * by doc id; a document is only scored once the bounds of the terms that can
+ * reach it beat the weakest score in the top-k heap, and every cursor behind
+ * it is advanced straight to it, skipping the postings in between.
+ * <p>
+ * With block-max enabled the candidate is checked again against the bounds
+ * of the blocks that hold it; when those cannot beat the threshold either,
+ * every cursor up to the pivot jumps past the nearest block end, so whole
+ * blocks are passed over without being decoded.
+ * <p>
+ * Deleted documents still hold postings; they are passed over when aligned
+ * and never offered to the heap.
+ */
+final class WandScorer {
+
+    private final Segment segment;
+    // null when no document of the segment is deleted
+    private final LiveDocs liveDocs;
+    private final PostingsIterator[] cursors;
+    // query weight times idf per term, applied to the normalized term frequencies in the postings
+    private final float[] termFactors;
+    private final float[] upperBounds;
+    private final float queryNorm;
+    private final boolean blockMax;
+    // offset turning segment doc ids into ids across all searched segments
+    private final int docBase;
+    // current doc id of each cursor, kept here to avoid a call per comparison
+    private final int[] docIds;
+    // cursor indexes ordered by their current doc id
+    private final int[] order;
+    // last doc id of the block each cursor was shallow-advanced to
+    private final int[] blockEnds;
+    private long totalPostings;
+    private long postingsScored;
+
+    WandScorer(Segment segment, LiveDocs liveDocs, int docBase, int[] termIds, float[] termFactors, float queryNorm,
+               boolean blockMax) {
+        this.segment = segment;
+        this.liveDocs = liveDocs;
+        this.docBase = docBase;
+        this.termFactors = termFactors;
+        this.queryNorm = queryNorm;
+        this.blockMax = blockMax;
+        this.cursors = new PostingsIterator[termIds.length];
+        this.upperBounds = new float[termIds.length];
+        this.docIds = new int[termIds.length];
+        this.order = new int[termIds.length];
+        this.blockEnds = new int[termIds.length];
+        for (int i = 0; i < termIds.length; i++) {
+            cursors[i] = segment.postings(termIds[i]);
+            docIds[i] = cursors[i].nextDoc();
+            upperBounds[i] = termFactors[i] * segment.getMaxImpact(termIds[i]) / queryNorm;
+            order[i] = i;
+            totalPostings += cursors[i].cost();
+        }
+    }
+
+    void collect(TopK topK) {
+        while (true) {
+            sortCursors();
+
+            // pivot: first cursor at which the summed bounds can beat the current threshold
+            float threshold = topK.threshold();
+            float bound = 0.0f;
+            int pivot = -1;
+            for (int i = 0; i < order.length && docIds[order[i]] != PostingsIterator.NO_MORE_DOCS; i++) {
+                bound += upperBounds[order[i]];
+                if (bound > threshold) {
+                    pivot = i;
+                    break;
+                }
+            }
+            if (pivot < 0) {
+                return;
+            }
+
+            int pivotDoc = docIds[order[pivot]];
+            if (blockMax) {
+                // cursors sitting on the pivot document take part in its block bound too
+                while (pivot + 1 < order.length && docIds[order[pivot + 1]] == pivotDoc) {
+                    pivot++;
+                }
+                if (!blockBoundAllows(pivot, pivotDoc, threshold)) {
+                    skipBlocks(pivot);
+                    continue;
+                }
+            }
+
+            if (docIds[order[0]] == pivotDoc) {
+                if (liveDocs != null && !liveDocs.isLive(pivotDoc)) {
+                    for (int i = 0; i < order.length && docIds[order[i]] == pivotDoc; i++) {
+                        docIds[order[i]] = cursors[order[i]].nextDoc();
+                    }
+                    continue;
+                }
+                float dotProduct = 0.0f;
+                for (int i = 0; i < order.length && docIds[order[i]] == pivotDoc; i++) {
+                    int cursor = order[i];
+                    dotProduct += termFactors[cursor] * cursors[cursor].weight();
+                    postingsScored++;
+                    docIds[cursor] = cursors[cursor].nextDoc();
+                }
+                float similarity = TfIdfCalculator.calculateCosineSimilarity(
+                        dotProduct, queryNorm, segment.getDocumentNorm(pivotDoc));
+                if (similarity > 0) {
+                    topK.offer(docBase + pivotDoc, similarity);
+                }
+            } else {
+                // no document before the pivot can reach the threshold with the terms in front of it
+                for (int i = 0; i < pivot; i++) {
+                    docIds[order[i]] = cursors[order[i]].advance(pivotDoc);
+                }
+            }
+        }
+    }
+
+    private boolean blockBoundAllows(int pivot, int pivotDoc, float threshold) {
+        float bound = 0.0f;
+        for (int i = 0; i <= pivot; i++) {
+            PostingsIterator cursor = cursors[order[i]];
+            blockEnds[order[i]] = cursor.shallowAdvance(pivotDoc);
+            bound += termFactors[order[i]] * cursor.blockMaxImpact() / queryNorm;
+        }
+        return bound > threshold;
+    }
+
+    // Nothing up to the end of the closest block can beat the threshold, nor anything before the next cursor
+    private void skipBlocks(int pivot) {
+        int next = PostingsIterator.NO_MORE_DOCS;
+        for (int i = 0; i <= pivot; i++) {
+            int blockEnd = blockEnds[order[i]];
+            if (blockEnd != PostingsIterator.NO_MORE_DOCS) {
+                next = Math.min(next, blockEnd + 1);
+            }
+        }
+        if (pivot + 1 < order.length) {
+            next = Math.min(next, docIds[order[pivot + 1]]);
+        }
+        for (int i = 0; i <= pivot; i++) {
+            docIds[order[i]] = cursors[order[i]].advance(next);
+        }
+    }
+
+    long postingsScored() {
+        return postingsScored;
+    }
+
+    long postingsSkipped() {
+        return totalPostings - postingsScored;
+    }
+
+    // Insertion sort: only a few cursors move between rounds
+    private void sortCursors() {
+        for (int i = 1; i < order.length; i++) {
+            int cursor = order[i];
+            int docId = docIds[cursor];
+            int j = i - 1;
+            while (j >= 0 && docIds[order[j]] > docId) {
+                order[j + 1] = order[j];
+                j--;
+            }
+            order[j + 1] = cursor;
+        }
+    }
+}
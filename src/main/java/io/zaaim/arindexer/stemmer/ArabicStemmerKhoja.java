@@ -7,7 +7,8 @@ import java.util.Vector;
 public class ArabicStemmerKhoja implements Stemmer {
 
 
-    static KhojaStem khoja = null;
+    // compiled lexicons, read without locking by every thread stemming with this instance
+    private final KhojaStem khoja;
 
     public ArabicStemmerKhoja() {
         khoja = new KhojaStem(readInStaticFilesFromJavaSrc());
@@ -0,0 +1,64 @@
+package io.zaaim.arindexer.stemmer;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Remembers the stems of recently seen words in front of another stemmer.
+ * Arabic text repeats the same surface forms heavily, so most tokens are only
+ * looked up. The cache is a fixed array of two-slot buckets picked by the
+ * word's hash, and a new word takes the place of one of its bucket's entries,
+ * so memory stays bounded without any eviction bookkeeping.
+ * <p>
+ * Slots are read and written without locks: entries are immutable, so their
+ * final fields make them safe to publish through a plain array, and at worst
+ * two threads stem the same word at once. One instance is shared by indexing
+ * and query analysis.
+ */
+public final class CachingStemmer implements Stemmer {
+
+    private record Entry(String word, String stem) {
+    }
+
+    private final Stemmer stemmer;
+    private final Entry[] slots;
+    private final int bucketMask;
+
+    // capacity is the number of words kept, rounded down to a power of two (at least one bucket of two)
+    public CachingStemmer(Stemmer stemmer, int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity));
+        this.stemmer = stemmer;
+        this.slots = new Entry[size];
+        this.bucketMask = size / 2 - 1;
+    }
+
+    @Override
+    public String stem(String word) {
+        int hash = word.hashCode();
+        int first = ((hash ^ (hash >>> 16)) & bucketMask) << 1;
+        Entry entry = slots[first];
+        if (entry == null || !entry.word().equals(word)) {
+            entry = slots[first + 1];
+        }
+        if (entry != null && entry.word().equals(word)) {
+            return entry.stem();
+        }
+
+        String stem = stemmer.stem(word);
+        // an empty slot if there is one, otherwise either entry; a random victim keeps two hot words from
+        // evicting each other forever
+        int slot = slots[first] == null ? first
+                : slots[first + 1] == null ? first + 1
+                : first + (ThreadLocalRandom.current().nextBoolean() ? 1 : 0);
+        slots[slot] = new Entry(word, stem);
+        return stem;
+    }
+
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getName() + "[" + stemmer + "]";
+    }
+}
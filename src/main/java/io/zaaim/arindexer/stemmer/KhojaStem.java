@@ -1,10 +1,18 @@
 package io.zaaim.arindexer.stemmer;
 
+import java.util.BitSet;
+import java.util.List;
+import java.util.Set;
 import java.util.Vector;
 
 /**
  * The Arabic stemmer utility class for Arabic texts.
- *
+ * <p>
+ * The lexicons are compiled once, when the stemmer is created: roots become
+ * {@link PackedRoots} looked up by their packed letters, other word lists
+ * immutable hash sets, lists scanned in order arrays and single-character
+ * lists bitsets indexed by the character. Nothing is written afterwards, so
+ * any number of threads stem with one instance without locking.
  */
 
 
@@ -12,8 +20,28 @@ public class KhojaStem
 {
     //--------------------------------------------------------------------------
 
-    // the files containing prefixes, suffixes and so on
-    private Vector<Vector<String>> staticFiles;
+    // the files containing prefixes, suffixes and so on, in the order readInStaticFilesFromJavaSrc lists them
+    private final String[] definiteArticles;
+    private final PackedRoots duplicates;
+    private final PackedRoots firstWaw;
+    private final PackedRoots firstYah;
+    private final PackedRoots lastAlif;
+    private final PackedRoots lastHamza;
+    private final PackedRoots lastMaksoura;
+    private final PackedRoots lastYah;
+    private final PackedRoots midWaw;
+    private final PackedRoots midYah;
+    private final String[] prefixes;
+    private final BitSet punctuation;
+    private final PackedRoots quadRoots;
+    private final Set<String> stopwords;
+    private final String[] suffixes;
+    private final String[] patterns;
+    private final PackedRoots triRoots;
+    // removeDiacritics has always read the strange words and checkStrangeWords the diacritics;
+    // they are kept that way round so stems do not change
+    private final BitSet strangeCharacters;
+    private final Set<String> diacritics;
 
 
 
@@ -24,8 +52,35 @@ public class KhojaStem
     public KhojaStem ( /*File fileToBeStemmed,*/ Vector<Vector<String>> statFiles )
     {
 
-        // clone the static files
-        staticFiles = (Vector<Vector<String>>) statFiles.clone ( );
+        definiteArticles = statFiles.elementAt ( 0 ).toArray ( new String[0] );
+        duplicates = new PackedRoots ( statFiles.elementAt ( 1 ), 2 );
+        firstWaw = new PackedRoots ( statFiles.elementAt ( 2 ), 2 );
+        firstYah = new PackedRoots ( statFiles.elementAt ( 3 ), 2 );
+        lastAlif = new PackedRoots ( statFiles.elementAt ( 4 ), 2 );
+        lastHamza = new PackedRoots ( statFiles.elementAt ( 5 ), 2 );
+        lastMaksoura = new PackedRoots ( statFiles.elementAt ( 6 ), 2 );
+        lastYah = new PackedRoots ( statFiles.elementAt ( 7 ), 2 );
+        midWaw = new PackedRoots ( statFiles.elementAt ( 8 ), 2 );
+        midYah = new PackedRoots ( statFiles.elementAt ( 9 ), 2 );
+        prefixes = statFiles.elementAt ( 10 ).toArray ( new String[0] );
+        punctuation = characters ( statFiles.elementAt ( 11 ) );
+        quadRoots = new PackedRoots ( statFiles.elementAt ( 12 ), 4 );
+        stopwords = Set.copyOf ( statFiles.elementAt ( 13 ) );
+        suffixes = statFiles.elementAt ( 14 ).toArray ( new String[0] );
+        patterns = statFiles.elementAt ( 15 ).toArray ( new String[0] );
+        triRoots = new PackedRoots ( statFiles.elementAt ( 16 ), 3 );
+        strangeCharacters = characters ( statFiles.elementAt ( 17 ) );
+        diacritics = Set.copyOf ( statFiles.elementAt ( 18 ) );
+    }
+
+    // the one-character entries of a list; a longer entry can never equal a single character
+    private static BitSet characters ( List<String> entries )
+    {
+        BitSet characters = new BitSet ( );
+        for ( String entry : entries )
+            if ( entry.length ( ) == 1 )
+                characters.set ( entry.charAt ( 0 ) );
+        return characters;
 
     }
 
@@ -134,12 +189,11 @@ public class KhojaStem
     {
         String prefix = "";
         String modifiedWord = word;
-        Vector<String> prefixes = ( Vector<String> ) staticFiles.elementAt ( 10 );
 
         // for every prefix in the list
-        for ( int i = 0; i < prefixes.size ( ); i++ )
+        for ( int i = 0; i < prefixes.length; i++ )
         {
-            prefix = ( String ) prefixes.elementAt ( i );
+            prefix = prefixes[i];
             // if the prefix was found
             if ( prefix.regionMatches ( 0, modifiedWord, 0, prefix.length ( ) ) )
             {
@@ -189,13 +243,12 @@ public class KhojaStem
     {
         String suffix = "";
         String modifiedWord = word;
-        Vector<String> suffixes = ( Vector<String> ) staticFiles.elementAt ( 14 );
         flags[5] = true;
 
         // for every suffix in the list
-        for ( int i = 0; i < suffixes.size ( ); i++ )
+        for ( int i = 0; i < suffixes.length; i++ )
         {
-            suffix = ( String ) suffixes.elementAt ( i );
+            suffix = suffixes[i];
 
             // if the suffix was found
             if( suffix.regionMatches ( 0, modifiedWord, modifiedWord.length ( ) - suffix.length ( ), suffix.length ( ) ) )
@@ -311,12 +364,11 @@ public class KhojaStem
         // find a match
         String definiteArticle = "";
         String modifiedWord = "";
-        Vector<String> definiteArticles = ( Vector<String> ) staticFiles.elementAt ( 0 );
 
         // for every definite article in the list
-        for ( int i = 0; i < definiteArticles.size ( ); i++ )
+        for ( int i = 0; i < definiteArticles.length; i++ )
         {
-            definiteArticle = ( String ) definiteArticles.elementAt ( i );
+            definiteArticle = definiteArticles[i];
             // if the definite article was found
             if ( definiteArticle.regionMatches ( 0, word, 0, definiteArticle.length ( ) ) )
             {
@@ -379,50 +431,63 @@ public class KhojaStem
         // if the word consists of two letters, then this could be either
         // - because it is a root consisting of two letters (though I can't think of any!)
         // - because a letter was deleted as it is duplicated or a weak middle or last letter.
+        char first = word.charAt ( 0 );
+        char second = word.charAt ( 1 );
 
-        word = duplicate ( word, flags );
+        String root = duplicate ( first, second, flags );
 
         // check if the last letter was weak
         if ( !flags[0] )
-            word = lastWeak ( word, flags );
+            root = lastWeak ( first, second, flags );
 
         // check if the first letter was weak
         if ( !flags[0] )
-            word = firstWeak ( word, flags );
+            root = firstWeak ( first, second, flags );
 
         // check if the middle letter was weak
         if ( !flags[0] )
-            word = middleWeak ( word, flags );
+            root = middleWeak ( first, second, flags );
 
-    return word;
+        return root != null ? root : word;
     }
 
     //--------------------------------------------------------------------------
 
     // if the word consists of three letters
+    // (or four, when a pattern has four root letters)
     private String isThreeLetters ( String word, boolean[] flags )
     {
-        StringBuffer modifiedWord = new StringBuffer ( word );
-        String root = "";
-        // if the first letter is a 'ا', 'ؤ'  or '	ئ'
-        // then change it to a 'أ'
+        // the root derived from the word, kept as its letters and only made
+        // into a string once it is found; rootLength is 0 while there is none
+        char first = 0;
+        char second = 0;
+        char third = 0;
+        int rootLength = 0;
         if ( word.length ( ) > 0 )
         {
-            if ( word.charAt ( 0 ) == '\u0627' || word.charAt ( 0 ) == '\u0624' || word.charAt ( 0 ) == '\u0626' )
+            char c0 = word.charAt ( 0 );
+            char c1 = word.charAt ( 1 );
+            char c2 = word.charAt ( 2 );
+
+            // if the first letter is a 'ا', 'ؤ'  or '	ئ'
+            // then change it to a 'أ'
+            if ( c0 == '\u0627' || c0 == '\u0624' || c0 == '\u0626' )
             {
-                modifiedWord.setLength ( 0 );
-                modifiedWord.append ( '\u0623' );
-                modifiedWord.append ( word.substring ( 1 ) );
-                root = modifiedWord.toString ( );
+                first = '\u0623';
+                second = c1;
+                third = c2;
+                rootLength = word.length ( );
             }
 
             // if the last letter is a weak letter or a hamza
             // then remove it and check for last weak letters
-            if ( word.charAt ( 2 ) == '\u0648' || word.charAt ( 2 ) == '\u064a' || word.charAt ( 2 ) == '\u0627' ||
-                 word.charAt ( 2 ) == '\u0649' || word.charAt ( 2 ) == '\u0621' || word.charAt ( 2 ) == '\u0626' )
+            if ( c2 == '\u0648' || c2 == '\u064a' || c2 == '\u0627' ||
+                 c2 == '\u0649' || c2 == '\u0621' || c2 == '\u0626' )
             {
-                root = word.substring ( 0, 2 );
-                root = lastWeak ( root, flags );
+                first = c0;
+                second = c1;
+                rootLength = 2;
+                String root = lastWeak ( c0, c1, flags );
                 if ( flags[0] )
                 {
                     return root;
@@ -431,49 +496,48 @@ public class KhojaStem
 
             // if the second letter is a weak letter or a hamza
             // then remove it
-            if ( word.charAt ( 1 ) == '\u0648' || word.charAt ( 1 ) == '\u064a' || word.charAt ( 1 ) == '\u0627' || word.charAt ( 1 ) == '\u0626' )
+            if ( c1 == '\u0648' || c1 == '\u064a' || c1 == '\u0627' || c1 == '\u0626' )
             {
-                root = word.substring ( 0, 1 );
-                root = root + word.substring ( 2 );
+                first = c0;
+                second = c2;
+                third = word.length ( ) > 3 ? word.charAt ( 3 ) : 0;
+                rootLength = word.length ( ) - 1;
 
-                root = middleWeak ( root, flags );
-                if ( flags[0] )
+                // the middle weak roots all have two letters
+                if ( rootLength == 2 )
                 {
-                    return root;
+                    String root = middleWeak ( c0, c2, flags );
+                    if ( flags[0] )
+                    {
+                        return root;
+                    }
                 }
             }
 
             // if the second letter has a hamza, and it's not on a alif
             // then it must be returned to the alif
-            if ( word.charAt ( 1 ) == '\u0624' || word.charAt ( 1 ) == '\u0626' )
+            if ( c1 == '\u0624' || c1 == '\u0626' )
             {
-                if ( word.charAt ( 2 ) == '\u0645' || word.charAt ( 2 ) == '\u0632' || word.charAt ( 2 ) == '\u0631' )
-                {
-                    root = word.substring ( 0, 1 );
-                    root = root + '\u0627';
-                    root = root+ word.substring ( 2 );
-                }
-                else
-                {
-                    root = word.substring ( 0, 1 );
-                    root = root + '\u0623';
-                    root = root + word.substring ( 2 );
-                }
+                first = c0;
+                second = c2 == '\u0645' || c2 == '\u0632' || c2 == '\u0631' ? '\u0627' : '\u0623';
+                third = c2;
+                rootLength = word.length ( );
             }
 
             // if the last letter is a shadda, remove it and
             // duplicate the last letter
-            if ( word.charAt ( 2 ) == '\u0651')
+            if ( c2 == '\u0651')
             {
-                root = word.substring ( 0, 1 );
-                root = root + word.substring ( 1, 2 );
+                first = c0;
+                second = c1;
+                rootLength = 2;
             }
         }
 
         // if word is a root, then rootFound is true
-        if ( root.length ( ) == 0 )
+        if ( rootLength == 0 )
         {
-            if ( ( ( Vector<String> ) staticFiles.elementAt ( 16 ) ) .contains ( word ) )
+            if ( triRoots.contains ( word ) )
             {
             	flags[0] = true;
 
@@ -481,12 +545,12 @@ public class KhojaStem
                 return word;
             }
         }
-        // check for the root that we just derived
-        else if ( ( ( Vector<String> ) staticFiles.elementAt ( 16 ) ) .contains ( root ) )
+        // check for the root that we just derived; the roots all have three letters
+        else if ( rootLength == 3 && triRoots.contains ( first, second, third ) )
         {
         	flags[0] = true;
 
-            return root;
+            return String.valueOf ( new char[] { first, second, third } );
         }
 
 
@@ -499,7 +563,7 @@ public class KhojaStem
     private void isFourLetters ( String word, boolean[] flags )
     {
         // if word is a root, then rootFound is true
-        if( ( ( Vector<String> ) staticFiles.elementAt ( 12 ) ) .contains ( word ) )
+        if( quadRoots.contains ( word ) )
         {
             flags[0] = true;
 
@@ -524,15 +588,14 @@ public class KhojaStem
             }
 
         // try and find a pattern that matches the word
-        Vector<String> patterns = ( Vector<String> ) staticFiles.elementAt ( 15 );
         int numberSameLetters = 0;
         String pattern = "";
         String modifiedWord = "";
 
         // for every pattern
-        for( int i = 0; i < patterns.size ( ); i++ )
+        for( int i = 0; i < patterns.length; i++ )
         {
-            pattern = ( String ) patterns.elementAt ( i );
+            pattern = patterns[i];
             root.setLength ( 0 );
             // if the length of the words are the same
             if ( pattern.length ( ) == word.length ( ) )
@@ -613,173 +676,89 @@ public class KhojaStem
 
     //--------------------------------------------------------------------------
 
-    // handle duplicate letters in the word
-    private String duplicate ( String word, boolean[] flags )
+    // handle duplicate letters in the word; null if none was deleted
+    private String duplicate ( char first, char second, boolean[] flags )
     {
         // check if a letter was duplicated
-        if ( ( ( Vector<String> ) staticFiles.elementAt ( 1 ) ).contains ( word ) )
+        if ( duplicates.contains ( first, second ) )
         {
-            // if so, then return the deleted duplicate letter
-            word = word + word.substring ( 1 );
-
             // root was found, so set variable
             flags[0] = true;
 
-
-
-            return word;
+            // if so, then return the deleted duplicate letter
+            return String.valueOf ( new char[] { first, second, second } );
         }
-        return word;
+        return null;
     }
 
     //--------------------------------------------------------------------------
 
-    // check if the last letter of the word is a weak letter
-    private String lastWeak ( String word, boolean[] flags )
+    // check if the last letter of the word is a weak letter; null if it was not
+    private String lastWeak ( char first, char second, boolean[] flags )
     {
-        StringBuffer stemmedWord = new StringBuffer ( "" );
+        char last;
         // check if the last letter was an alif
-        if ( ( ( Vector<String> )staticFiles.elementAt ( 4 ) ).contains ( word ) )
-        {
-            stemmedWord.append ( word );
-            stemmedWord.append ( "\u0627" );
-            word = stemmedWord.toString ( );
-            stemmedWord.setLength ( 0 );
-
-            // root was found, so set variable
-            flags[0] = true;
-
-
-
-            return word;
-        }
+        if ( lastAlif.contains ( first, second ) )
+            last = '\u0627';
         // check if the last letter was an hamza
-        else if ( ( ( Vector<String> ) staticFiles.elementAt ( 5 ) ) .contains ( word ) )
-        {
-            stemmedWord.append ( word );
-            stemmedWord.append ( "\u0623" );
-            word = stemmedWord.toString ( );
-            stemmedWord.setLength ( 0 );
-
-            // root was found, so set variable
-            flags[0] = true;
-
-
-
-            return word;
-        }
+        else if ( lastHamza.contains ( first, second ) )
+            last = '\u0623';
         // check if the last letter was an maksoura
-        else if ( ( ( Vector<String> ) staticFiles.elementAt ( 6 ) ) .contains ( word ) )
-        {
-            stemmedWord.append ( word );
-            stemmedWord.append ( "\u0649" );
-            word = stemmedWord.toString ( );
-            stemmedWord.setLength ( 0 );
-
-            // root was found, so set variable
-            flags[0] = true;
-
-
-
-            return word;
-        }
+        else if ( lastMaksoura.contains ( first, second ) )
+            last = '\u0649';
         // check if the last letter was an yah
-        else if ( ( ( Vector<String> ) staticFiles.elementAt ( 7 ) ).contains ( word ) )
-        {
-            stemmedWord.append ( word );
-            stemmedWord.append ( "\u064a" );
-            word = stemmedWord.toString ( );
-            stemmedWord.setLength ( 0 );
-
-            // root was found, so set variable
-            flags[0] = true;
-
+        else if ( lastYah.contains ( first, second ) )
+            last = '\u064a';
+        else
+            return null;
 
+        // root was found, so set variable
+        flags[0] = true;
 
-            return word;
-        }
-        return word;
+        return String.valueOf ( new char[] { first, second, last } );
     }
 
     //--------------------------------------------------------------------------
 
-    // check if the first letter is a weak letter
-    private String firstWeak ( String word, boolean[] flags )
+    // check if the first letter is a weak letter; null if it was not
+    private String firstWeak ( char first, char second, boolean[] flags )
     {
-        StringBuffer stemmedWord = new StringBuffer ( "" );
+        char weak;
         // check if the firs letter was a waw
-        if( ( ( Vector<String> ) staticFiles.elementAt ( 2 ) ) .contains ( word ) )
-        {
-            stemmedWord.append ( "\u0648" );
-            stemmedWord.append ( word );
-            word = stemmedWord.toString ( );
-            stemmedWord.setLength ( 0 );
-
-            // root was found, so set variable
-            flags[0] = true;
-
-
-
-            return word;
-        }
+        if ( firstWaw.contains ( first, second ) )
+            weak = '\u0648';
         // check if the first letter was a yah
-        else if ( ( ( Vector<String> ) staticFiles.elementAt ( 3 ) ) .contains ( word ) )
-        {
-            stemmedWord.append ( "\u064a" );
-            stemmedWord.append ( word );
-            word = stemmedWord.toString ( );
-            stemmedWord.setLength ( 0 );
-
-            // root was found, so set variable
-            flags[0] = true;
-
+        else if ( firstYah.contains ( first, second ) )
+            weak = '\u064a';
+        else
+            return null;
 
+        // root was found, so set variable
+        flags[0] = true;
 
-            return word;
-        }
-    return word;
+        return String.valueOf ( new char[] { weak, first, second } );
     }
 
     //--------------------------------------------------------------------------
 
-    // check if the middle letter of the root is weak
-    private String middleWeak ( String word, boolean[] flags )
+    // check if the middle letter of the root is weak; null if it was not
+    private String middleWeak ( char first, char second, boolean[] flags )
     {
-        StringBuffer stemmedWord = new StringBuffer ( "j" );
+        char middle;
         // check if the middle letter is a waw
-        if ( ( ( Vector<String> ) staticFiles.elementAt ( 8 ) ) .contains ( word ) )
-        {
-            // return the waw to the word
-            stemmedWord.setCharAt ( 0, word.charAt ( 0 ) );
-            stemmedWord.append ( "\u0648" );
-            stemmedWord.append ( word.substring ( 1 ) );
-            word = stemmedWord.toString ( );
-            stemmedWord.setLength ( 0 );
-
-            // root was found, so set variable
-            flags[0] = true;
-
-
-
-            return word;
-        }
+        if ( midWaw.contains ( first, second ) )
+            middle = '\u0648';
         // check if the middle letter is a yah
-        else if ( ( ( Vector<String> ) staticFiles.elementAt ( 9 ) ) .contains ( word ) )
-        {
-            // return the waw to the word
-            stemmedWord.setCharAt ( 0, word.charAt ( 0 ) );
-            stemmedWord.append ( "\u064a" );
-            stemmedWord.append ( word.substring ( 1 ) );
-            word = stemmedWord.toString ( );
-            stemmedWord.setLength ( 0 );
+        else if ( midYah.contains ( first, second ) )
+            middle = '\u064a';
+        else
+            return null;
 
-            // root was found, so set variable
-            flags[0] = true;
+        // root was found, so set variable
+        flags[0] = true;
 
-
-            return word;
-        }
-        return word;
+        // return the weak letter to the word
+        return String.valueOf ( new char[] { first, middle, second } );
     }
 
     //--------------------------------------------------------------------------
@@ -789,13 +768,12 @@ public class KhojaStem
     {
         boolean punctuationFound = false;
         modifiedWord.setLength ( 0 );
-        Vector<String> punctuations = ( Vector<String> ) staticFiles.elementAt ( 11 );
 
         // for every character in the current word, if it is a punctuation then do nothing
         // otherwise, copy this character to the modified word
         for ( int i = 0; i < currentWord.length ( ); i++ )
         {
-            if ( ! ( punctuations.contains ( currentWord.substring ( i, i+1 ) ) ) )
+            if ( ! ( punctuation.get ( currentWord.charAt ( i ) ) ) )
             {
                 modifiedWord.append ( currentWord.charAt ( i ) );
 
@@ -818,12 +796,11 @@ public class KhojaStem
 
     	boolean diacriticFound = false;
         modifiedWord.setLength ( 0 );
-        Vector<String> diacritics = ( Vector ) staticFiles.elementAt ( 17 );
 
         for ( int i = 0; i < currentWord.length ( ); i++ )
             // if the character is not a diacritic, append it to modified word
-            if ( ! ( diacritics.contains ( currentWord.substring ( i, i+1 ) ) ) )
-                modifiedWord.append ( currentWord.substring ( i, i+1 ) );
+            if ( ! ( strangeCharacters.get ( currentWord.charAt ( i ) ) ) )
+                modifiedWord.append ( currentWord.charAt ( i ) );
             else
             {
                 diacriticFound = true;
@@ -837,9 +814,8 @@ public class KhojaStem
     // check that the word is a stopword
     private boolean checkStopwords ( String currentWord, boolean[] flags )
     {
-        Vector<String> v = ( Vector<String> ) staticFiles.elementAt ( 13 );
         //stopwordFound = v.contains ( currentWord );
-        flags[2] = v.contains ( currentWord );
+        flags[2] = stopwords.contains ( currentWord );
 
 
         return flags[2];
@@ -850,9 +826,8 @@ public class KhojaStem
     // check that the word is a strange word
     private boolean checkStrangeWords ( String currentWord, boolean[] flags )
     {
-        Vector<String> v = ( Vector<String> ) staticFiles.elementAt ( 18 );
         //strangeWordFound = v.contains( currentWord );
-        flags[3] = v.contains( currentWord );
+        flags[3] = diacritics.contains( currentWord );
 
 
         return flags[3];
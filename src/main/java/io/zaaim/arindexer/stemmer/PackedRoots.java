@@ -0,0 +1,123 @@
+package io.zaaim.arindexer.stemmer;
+
+import java.util.Collection;
+
+/**
+ * A set of roots of one length, looked up by their letters packed into an
+ * int. Arabic letters fall between U+0621 and U+064A, so each one takes 6
+ * bits: a two-letter root is a 12-bit code, a three-letter root 18 bits and a
+ * four-letter root 24 bits. Codes of up to three letters index a bitset
+ * directly; four-letter codes go through a small open-addressing table. A
+ * lookup reads the letters where they are, so nothing is allocated, and the
+ * set is never written after construction, so threads share it freely.
+ */
+final class PackedRoots {
+
+    private static final char FIRST_LETTER = '\u0621';
+    private static final char LAST_LETTER = '\u064a';
+    private static final int BITS_PER_LETTER = 6;
+    // longest roots kept in a bitset; three letters take 2^18 bits, 32 KB
+    private static final int MAX_BITSET_LETTERS = 3;
+
+    private final int letters;
+    // one bit per code, or null when the codes are hashed into table
+    private final long[] bits;
+    // codes by hash with linear probing; letters are numbered from 1, so 0 marks an empty slot
+    private final int[] table;
+    private final int tableShift;
+
+    // Entries of another length are left out, no word of this length can equal them
+    PackedRoots(Collection<String> roots, int letters) {
+        if (letters < 1 || letters > 4) {
+            throw new IllegalArgumentException("Roots must have 1 to 4 letters: " + letters);
+        }
+        this.letters = letters;
+        int count = 0;
+        for (String root : roots) {
+            if (root.length() == letters) {
+                if (code(root) < 0) {
+                    throw new IllegalArgumentException("Root has a letter outside U+0621-U+064A: " + root);
+                }
+                count++;
+            }
+        }
+
+        if (letters <= MAX_BITSET_LETTERS) {
+            bits = new long[Math.max(1, (1 << (BITS_PER_LETTER * letters)) / 64)];
+            table = null;
+            tableShift = 0;
+        } else {
+            // at most half full, so a probe ends after a slot or two
+            int tableBits = Math.max(4, 32 - Integer.numberOfLeadingZeros(count * 2));
+            bits = null;
+            table = new int[1 << tableBits];
+            tableShift = 32 - tableBits;
+        }
+        for (String root : roots) {
+            if (root.length() == letters) {
+                add(code(root));
+            }
+        }
+    }
+
+    boolean contains(String word) {
+        return word.length() == letters && contains(code(word));
+    }
+
+    boolean contains(char first, char second) {
+        return letters == 2 && contains(pack(pack(0, first), second));
+    }
+
+    boolean contains(char first, char second, char third) {
+        return letters == 3 && contains(pack(pack(pack(0, first), second), third));
+    }
+
+    private boolean contains(int code) {
+        if (code < 0) {
+            return false;
+        }
+        if (bits != null) {
+            return (bits[code >>> 6] & (1L << code)) != 0;
+        }
+        for (int slot = hash(code); ; slot = (slot + 1) & (table.length - 1)) {
+            if (table[slot] == code) {
+                return true;
+            } else if (table[slot] == 0) {
+                return false;
+            }
+        }
+    }
+
+    private void add(int code) {
+        if (bits != null) {
+            bits[code >>> 6] |= 1L << code;
+            return;
+        }
+        int slot = hash(code);
+        while (table[slot] != 0 && table[slot] != code) {
+            slot = (slot + 1) & (table.length - 1);
+        }
+        table[slot] = code;
+    }
+
+    private int hash(int code) {
+        return (code * 0x9E3779B9) >>> tableShift;
+    }
+
+    // -1 if the word has a character that is not an Arabic letter
+    private static int code(String word) {
+        int code = 0;
+        for (int i = 0; i < word.length(); i++) {
+            code = pack(code, word.charAt(i));
+        }
+        return code;
+    }
+
+    // Appends a letter to a code; once a character is not a letter the code stays -1
+    private static int pack(int code, char letter) {
+        if (code < 0 || letter < FIRST_LETTER || letter > LAST_LETTER) {
+            return -1;
+        }
+        return code << BITS_PER_LETTER | (letter - FIRST_LETTER + 1);
+    }
+}
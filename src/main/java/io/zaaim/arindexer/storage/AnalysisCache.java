@@ -0,0 +1,181 @@
+package io.zaaim.arindexer.storage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Term frequencies of analyzed documents, stored on disk by the SHA-256 of
+ * the document's content, so reindexing a document that was analyzed before
+ * skips tokenizing and stemming. Entries live under a directory per analysis
+ * version, and a change to the analysis chain that alters its output starts
+ * from an empty cache. A missing or unreadable entry is a miss; entries are
+ * renamed into place, so a reader never sees a partial one.
+ * <p>
+ * One cache directory serves every index, so it is never pruned to the
+ * documents of one corpus; {@link #trim} drops the least recently used
+ * entries once it grows past a size budget instead. Writes and trims of the
+ * same directory exclude each other within this process.
+ *
+ * <pre>
+ * &lt;version&gt;/&lt;hash[0..2]&gt;/&lt;hash&gt;:
+ * int magic "ARTF", int term count, (UTF term, int frequency)*
+ * </pre>
+ */
+public final class AnalysisCache {
+
+    private static final Logger LOGGER = Logger.getLogger(AnalysisCache.class.getName());
+    private static final int MAGIC = 0x41525446; // "ARTF"
+
+    // per cache directory: writers share it, a trim holds it alone
+    private static final Map<Path, ReadWriteLock> LOCKS = new ConcurrentHashMap<>();
+
+    private final Path directory;
+    private final ReadWriteLock lock;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public AnalysisCache(Path directory, int analysisVersion) {
+        this.directory = directory.resolve("v" + analysisVersion).toAbsolutePath().normalize();
+        this.lock = LOCKS.computeIfAbsent(this.directory, key -> new ReentrantReadWriteLock());
+    }
+
+    // Term frequencies of the content with hash, or null if it was not analyzed before
+    public Map<String, Integer> get(String hash) {
+        Path path = pathFor(hash);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not an analysis cache entry: " + path);
+            }
+            int count = in.readInt();
+            Map<String, Integer> termFrequency = new HashMap<>(count * 4 / 3 + 1);
+            for (int i = 0; i < count; i++) {
+                termFrequency.put(in.readUTF(), in.readInt());
+            }
+            hits.incrementAndGet();
+            touch(path);
+            return termFrequency;
+        } catch (NoSuchFileException e) {
+            misses.incrementAndGet();
+            return null;
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Ignoring unreadable analysis cache entry " + path, e);
+            misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    // Best effort: a failed write only costs analyzing the document again next time
+    public void put(String hash, Map<String, Integer> termFrequency) {
+        Path path = pathFor(hash);
+        Path temporary = null;
+        lock.readLock().lock();
+        try {
+            Files.createDirectories(path.getParent());
+            temporary = Files.createTempFile(path.getParent(), hash, DurableFiles.TEMPORARY_SUFFIX);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(termFrequency.size());
+                for (Map.Entry<String, Integer> entry : termFrequency.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeInt(entry.getValue());
+                }
+            }
+            Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not write analysis cache entry " + path, e);
+            if (temporary != null) {
+                try {
+                    Files.deleteIfExists(temporary);
+                } catch (IOException ignored) {
+                    // left for the next trim
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Deletes the least recently used entries until the rest take at most
+     * maxBytes, and leftovers of interrupted writes; returns how many files
+     * were deleted.
+     */
+    public int trim(long maxBytes) throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (!Files.isDirectory(directory)) {
+                return 0;
+            }
+            List<Path> files;
+            try (Stream<Path> walk = Files.walk(directory)) {
+                files = walk.filter(Files::isRegularFile).toList();
+            }
+            int deleted = 0;
+            long totalBytes = 0;
+            List<Map.Entry<Path, BasicFileAttributes>> entries = new ArrayList<>(files.size());
+            for (Path file : files) {
+                if (file.getFileName().toString().endsWith(DurableFiles.TEMPORARY_SUFFIX)) {
+                    // no write is running, the lock is held
+                    Files.deleteIfExists(file);
+                    deleted++;
+                    continue;
+                }
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                entries.add(Map.entry(file, attributes));
+                totalBytes += attributes.size();
+            }
+            entries.sort(Comparator.comparing(entry -> entry.getValue().lastModifiedTime()));
+            for (int i = 0; i < entries.size() && totalBytes > maxBytes; i++) {
+                Files.deleteIfExists(entries.get(i).getKey());
+                totalBytes -= entries.get(i).getValue().size();
+                deleted++;
+            }
+            return deleted;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    // Marks a hit as recently used, so trim keeps it over entries nothing read for longer
+    private static void touch(Path path) {
+        try {
+            Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Could not touch analysis cache entry " + path, e);
+        }
+    }
+
+    // Sharded by the first two hex digits, so no directory holds every entry
+    private Path pathFor(String hash) {
+        return directory.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+}
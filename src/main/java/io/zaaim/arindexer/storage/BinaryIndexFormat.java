@@ -0,0 +1,437 @@
+package io.zaaim.arindexer.storage;
+
+import io.zaaim.arindexer.model.Index;
+import io.zaaim.arindexer.util.TfIdfCalculator;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Versioned binary layout for {@link Index} files, read and written through
+ * buffered {@link FileChannel}s.
+ *
+ * <pre>
+ * header      magic "ARIX", version, doc count, term count, posting count,
+ *             offsets of the sections below (128 bytes)
+ * postings    per term id: raw term frequencies in blocks encoded by
+ *             {@link PostingsCodec}, with per-block score bounds
+ * dictionary  per term id: utf-8 term, df, idf, offset of its postings,
+ *             largest weight, largest weight / norm
+ * documents   per doc id: utf-8 relative path, vector norm, length in terms
+ * norms       float[doc count]
+ * lengths     int[doc count] document lengths
+ * term index  long[term count] dictionary entry offsets
+ * doc index   long[doc count] document entry offsets
+ * </pre>
+ * All values are little-endian and terms are stored in sorted order. Weights
+ * are derived from the stored frequencies and lengths when read, and idf and
+ * norms are the only values that depend on the rest of the collection, so
+ * collection statistics can change without touching the postings. Sections
+ * are written in this order so an index can be streamed out; the header is
+ * filled in last. The fixed-width tables let {@link io.zaaim.arindexer.model.MappedSegment}
+ * binary-search terms and reach any document without reading the whole file.
+ */
+public final class BinaryIndexFormat {
+
+    public static final int MAGIC = 0x58495241; // "ARIX" read as little-endian
+    public static final int VERSION = 7;
+    public static final int HEADER_SIZE = 128;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private BinaryIndexFormat() {
+    }
+
+    public static void write(Index index, Path path) throws IOException {
+        int documentCount = index.getDocumentCount();
+        float[] norms = new float[documentCount];
+        String[] documents = new String[documentCount];
+        for (int docId = 0; docId < documentCount; docId++) {
+            norms[docId] = index.getDocumentNorm(docId);
+            documents[docId] = index.getDocumentName(docId);
+        }
+        try (Writer writer = new Writer(path, norms, index.getDocumentLengths())) {
+            for (int termId = 0; termId < index.getTermCount(); termId++) {
+                writer.addTerm(index.getTerm(termId), index.getInverseDocumentFrequency(termId),
+                        index.getPostingDocuments(termId), index.getPostingWeights(termId));
+            }
+            writer.finish(documents);
+        }
+    }
+
+    /**
+     * Streams an index file out one term at a time, for indexes that are not
+     * held on the heap as a whole. Document norms are needed up front for the
+     * score bounds stored with the postings, and so are document lengths to
+     * turn weights into the raw frequencies that are stored; terms have to be
+     * added in sorted order, and only
+     * the dictionary entries are kept until {@link #finish}.
+     */
+    public static final class Writer implements AutoCloseable {
+        private final FileChannel channel;
+        private final Output out;
+        private final float[] norms;
+        private final int[] lengths;
+        private final long postingsOffset;
+        private final List<String> terms = new ArrayList<>();
+        private final List<float[]> termStats = new ArrayList<>();
+        private final List<Long> termPostings = new ArrayList<>();
+        private final List<Integer> termFrequencies = new ArrayList<>();
+        private long postingCount;
+
+        public Writer(Path path, float[] documentNorms, int[] documentLengths) throws IOException {
+            if (documentLengths.length != documentNorms.length) {
+                throw new IllegalArgumentException("Expected " + documentNorms.length + " document lengths, got "
+                        + documentLengths.length);
+            }
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            this.out = new Output(channel);
+            this.norms = documentNorms;
+            this.lengths = documentLengths;
+            out.skip(HEADER_SIZE);
+            this.postingsOffset = out.position();
+        }
+
+        // weights are term frequency / document length, doc ids ascending
+        public void addTerm(String term, float inverseDocumentFrequency, int[] documents, float[] weights)
+                throws IOException {
+            // exact as long as the weights were computed from the same lengths
+            int[] frequencies = new int[documents.length];
+            for (int i = 0; i < documents.length; i++) {
+                frequencies[i] = Math.round(weights[i] * lengths[documents[i]]);
+            }
+            addTerm(term, inverseDocumentFrequency, documents, frequencies);
+        }
+
+        // Raw term frequencies, doc ids ascending
+        public void addTerm(String term, float inverseDocumentFrequency, int[] documents, int[] frequencies)
+                throws IOException {
+            float maxWeight = 0.0f;
+            float maxImpact = 0.0f;
+            for (int i = 0; i < documents.length; i++) {
+                float weight = PostingsCodec.weight(frequencies[i], lengths[documents[i]]);
+                maxWeight = Math.max(maxWeight, weight);
+                maxImpact = Math.max(maxImpact, TfIdfCalculator.calculateImpact(weight, norms[documents[i]]));
+            }
+            addEntry(term, documents.length, new float[]{inverseDocumentFrequency, maxWeight, maxImpact});
+            out.putBytes(PostingsCodec.encodeFrequencies(documents, frequencies, lengths, norms));
+        }
+
+        private void addEntry(String term, int documentFrequency, float[] stats) {
+            if (!terms.isEmpty() && terms.get(terms.size() - 1).compareTo(term) >= 0) {
+                throw new IllegalArgumentException("Terms must be added in sorted order: " + term);
+            }
+            terms.add(term);
+            termPostings.add(out.position());
+            termFrequencies.add(documentFrequency);
+            termStats.add(stats);
+            postingCount += documentFrequency;
+        }
+
+        // Writes the dictionary, documents and lookup tables, then the header
+        public void finish(String[] documents) throws IOException {
+            if (documents.length != norms.length) {
+                throw new IllegalArgumentException("Expected " + norms.length + " documents, got " + documents.length);
+            }
+            int termCount = terms.size();
+            long dictionaryOffset = out.position();
+            long[] termOffsets = new long[termCount];
+            for (int termId = 0; termId < termCount; termId++) {
+                float[] stats = termStats.get(termId);
+                termOffsets[termId] = out.position();
+                out.putString(terms.get(termId));
+                out.putInt(termFrequencies.get(termId));
+                out.putFloat(stats[0]);
+                out.putLong(termPostings.get(termId));
+                out.putFloat(stats[1]);
+                out.putFloat(stats[2]);
+            }
+
+            long documentsOffset = out.position();
+            long[] documentOffsets = new long[documents.length];
+            for (int docId = 0; docId < documents.length; docId++) {
+                documentOffsets[docId] = out.position();
+                out.putString(documents[docId]);
+                out.putFloat(norms[docId]);
+                out.putInt(lengths[docId]);
+            }
+
+            long normsOffset = out.position();
+            out.putFloats(norms);
+            long lengthsOffset = out.position();
+            out.putInts(lengths);
+            long termIndexOffset = out.position();
+            out.putLongs(termOffsets);
+            long documentIndexOffset = out.position();
+            out.putLongs(documentOffsets);
+            out.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC)
+                    .putInt(VERSION)
+                    .putInt(documents.length)
+                    .putInt(termCount)
+                    .putLong(postingCount)
+                    .putLong(postingsOffset)
+                    .putLong(dictionaryOffset)
+                    .putLong(documentsOffset)
+                    .putLong(normsOffset)
+                    .putLong(termIndexOffset)
+                    .putLong(documentIndexOffset)
+                    .putLong(lengthsOffset)
+                    .clear();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    public static Index read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            Header header = readHeader(channel, path);
+            Input in = new Input(channel);
+
+            in.seek(header.dictionaryOffset());
+            String[] terms = new String[header.termCount()];
+            int[] documentFrequency = new int[header.termCount()];
+            float[] inverseDocumentFrequency = new float[header.termCount()];
+            long[] postingOffsets = new long[header.termCount()];
+            for (int termId = 0; termId < terms.length; termId++) {
+                terms[termId] = in.getString();
+                documentFrequency[termId] = in.getInt();
+                inverseDocumentFrequency[termId] = in.getFloat();
+                postingOffsets[termId] = in.getLong();
+                // the heap index derives its bounds from the decoded weights
+                in.getFloat();
+                in.getFloat();
+            }
+
+            in.seek(header.documentsOffset());
+            String[] documents = new String[header.documentCount()];
+            float[] documentNorms = new float[header.documentCount()];
+            int[] documentLengths = new int[header.documentCount()];
+            for (int docId = 0; docId < documents.length; docId++) {
+                documents[docId] = in.getString();
+                documentNorms[docId] = in.getFloat();
+                documentLengths[docId] = in.getInt();
+            }
+
+            in.seek(header.postingsOffset());
+            int[][] postingDocuments = new int[terms.length][];
+            float[][] postingWeights = new float[terms.length][];
+            for (int termId = 0; termId < terms.length; termId++) {
+                // postings are contiguous, so each list ends where the next one starts
+                long end = termId + 1 < terms.length ? postingOffsets[termId + 1] : header.dictionaryOffset();
+                ByteBuffer encoded = ByteBuffer.wrap(in.getBytes((int) (end - postingOffsets[termId])))
+                        .order(ByteOrder.LITTLE_ENDIAN);
+                int[] docs = new int[documentFrequency[termId]];
+                float[] weights = new float[documentFrequency[termId]];
+                int[] termFrequencies = new int[docs.length];
+                PostingsCodec.decodeValues(encoded, 0, docs, termFrequencies);
+                for (int i = 0; i < docs.length; i++) {
+                    weights[i] = PostingsCodec.weight(termFrequencies[i], documentLengths[docs[i]]);
+                }
+                postingDocuments[termId] = docs;
+                postingWeights[termId] = weights;
+            }
+
+            return new Index(documents, documentNorms, documentLengths, terms, inverseDocumentFrequency,
+                    postingDocuments, postingWeights);
+        }
+    }
+
+    public static Header readHeader(FileChannel channel, Path path) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(HEADER_SIZE, channel.size()))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, buffer.position()) < 0) {
+                break;
+            }
+        }
+        return Header.parse(buffer.flip(), path);
+    }
+
+    public record Header(int version, int documentCount, int termCount, long postingCount,
+                         long postingsOffset, long dictionaryOffset, long documentsOffset,
+                         long normsOffset, long termIndexOffset, long documentIndexOffset,
+                         long documentLengthsOffset) {
+
+        public static Header parse(ByteBuffer buffer, Path path) throws IOException {
+            ByteBuffer in = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            if (in.remaining() < HEADER_SIZE || in.getInt(0) != MAGIC) {
+                throw new IOException("Not a binary index file: " + path);
+            }
+            int version = in.getInt(4);
+            if (version != VERSION) {
+                throw new IOException("Unsupported binary index version " + version + ": " + path);
+            }
+            return new Header(version, in.getInt(8), in.getInt(12), in.getLong(16),
+                    in.getLong(24), in.getLong(32), in.getLong(40),
+                    in.getLong(48), in.getLong(56), in.getLong(64), in.getLong(72));
+        }
+    }
+
+    private static final class Output {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private long flushed;
+
+        Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        long position() {
+            return flushed + buffer.position();
+        }
+
+        void skip(int bytes) throws IOException {
+            flush();
+            flushed += bytes;
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(Integer.BYTES);
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) throws IOException {
+            ensure(Long.BYTES);
+            buffer.putLong(value);
+        }
+
+        void putFloat(float value) throws IOException {
+            ensure(Float.BYTES);
+            buffer.putFloat(value);
+        }
+
+        void putLongs(long[] values) throws IOException {
+            for (long value : values) {
+                putLong(value);
+            }
+        }
+
+        void putInts(int[] values) throws IOException {
+            for (int value : values) {
+                putInt(value);
+            }
+        }
+
+        void putFloats(float[] values) throws IOException {
+            int written = 0;
+            while (written < values.length) {
+                ensure(Float.BYTES);
+                int chunk = Math.min(buffer.remaining() / Float.BYTES, values.length - written);
+                buffer.asFloatBuffer().put(values, written, chunk);
+                buffer.position(buffer.position() + chunk * Float.BYTES);
+                written += chunk;
+            }
+        }
+
+        void putString(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            putInt(bytes.length);
+            putBytes(bytes);
+        }
+
+        void putBytes(byte[] bytes) throws IOException {
+            int written = 0;
+            while (written < bytes.length) {
+                ensure(1);
+                int chunk = Math.min(buffer.remaining(), bytes.length - written);
+                buffer.put(bytes, written, chunk);
+                written += chunk;
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                flushed += channel.write(buffer, flushed);
+            }
+            buffer.clear();
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+    }
+
+    static final class Input {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        // file position of the first byte in the buffer
+        private long bufferStart;
+
+        Input(FileChannel channel) {
+            this.channel = channel;
+            buffer.limit(0);
+        }
+
+        void seek(long position) {
+            bufferStart = position;
+            buffer.limit(0);
+        }
+
+        int getInt() throws IOException {
+            require(Integer.BYTES);
+            return buffer.getInt();
+        }
+
+        long getLong() throws IOException {
+            require(Long.BYTES);
+            return buffer.getLong();
+        }
+
+        float getFloat() throws IOException {
+            require(Float.BYTES);
+            return buffer.getFloat();
+        }
+
+        String getString() throws IOException {
+            return new String(getBytes(getInt()), StandardCharsets.UTF_8);
+        }
+
+        byte[] getBytes(int count) throws IOException {
+            byte[] bytes = new byte[count];
+            int read = 0;
+            while (read < bytes.length) {
+                require(1);
+                int chunk = Math.min(buffer.remaining(), bytes.length - read);
+                buffer.get(bytes, read, chunk);
+                read += chunk;
+            }
+            return bytes;
+        }
+
+        private void require(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) {
+                return;
+            }
+            bufferStart += buffer.position();
+            buffer.compact();
+            while (buffer.position() < bytes) {
+                int read = channel.read(buffer, bufferStart + buffer.position());
+                if (read < 0) {
+                    throw new EOFException("Unexpected end of binary index file");
+                }
+            }
+            buffer.flip();
+        }
+    }
+}
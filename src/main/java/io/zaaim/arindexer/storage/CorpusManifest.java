@@ -0,0 +1,118 @@
+package io.zaaim.arindexer.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The corpus files an index was last built from: relative path, size,
+ * modification time and content hash of each. A reindex compares the files
+ * on disk against it and only analyzes the ones that changed; the hash is
+ * only computed when size or modification time differ, so touching a file
+ * without changing it costs a read but no reindex. The analysis version the
+ * files were indexed with is kept too, as documents analyzed differently
+ * should not be mixed in one index.
+ *
+ * <pre>
+ * arindexer-corpus 1
+ * analysis &lt;version&gt;           (absent in manifests of analysis version 1)
+ * &lt;size&gt; &lt;modified millis&gt; &lt;sha-256&gt; &lt;relative path&gt;
+ * </pre>
+ */
+public record CorpusManifest(Map<String, Entry> files, int analysisVersion) {
+
+    public static final String FILE_NAME = "corpus";
+
+    private static final String HEADER = "arindexer-corpus 1";
+    private static final String ANALYSIS_PREFIX = "analysis ";
+
+    public record Entry(long size, long modifiedMillis, String hash) {
+
+        // Same size and modification time; the content is then assumed unchanged
+        public boolean sameAttributes(BasicFileAttributes attributes) {
+            return size == attributes.size() && modifiedMillis == attributes.lastModifiedTime().toMillis();
+        }
+    }
+
+    public CorpusManifest {
+        files = Map.copyOf(files);
+    }
+
+    // The manifest stored in directory, or null if none was written yet
+    public static CorpusManifest read(Path directory) throws IOException {
+        Path path = directory.resolve(FILE_NAME);
+        if (!Files.exists(path)) {
+            return null;
+        }
+        List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+        if (lines.isEmpty() || !HEADER.equals(lines.get(0))) {
+            throw new IOException("Not a corpus manifest: " + path);
+        }
+        Map<String, Entry> files = new TreeMap<>();
+        int analysisVersion = 1;
+        for (String line : lines.subList(1, lines.size())) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            if (line.startsWith(ANALYSIS_PREFIX)) {
+                analysisVersion = Integer.parseInt(line.substring(ANALYSIS_PREFIX.length()));
+                continue;
+            }
+            // the path goes last, it may contain spaces
+            String[] fields = line.split(" ", 4);
+            if (fields.length < 4) {
+                throw new IOException("Unexpected corpus manifest line in " + path + ": " + line);
+            }
+            files.put(fields[3], new Entry(Long.parseLong(fields[0]), Long.parseLong(fields[1]), fields[2]));
+        }
+        return new CorpusManifest(files, analysisVersion);
+    }
+
+    public void write(Path directory) throws IOException {
+        StringBuilder text = new StringBuilder(HEADER).append('\n')
+                .append(ANALYSIS_PREFIX).append(analysisVersion).append('\n');
+        for (Map.Entry<String, Entry> file : new TreeMap<>(files).entrySet()) {
+            Entry entry = file.getValue();
+            text.append(entry.size()).append(' ')
+                    .append(entry.modifiedMillis()).append(' ')
+                    .append(entry.hash()).append(' ')
+                    .append(file.getKey()).append('\n');
+        }
+        DurableFiles.write(directory.resolve(FILE_NAME), text.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    // SHA-256 of the file's content, in hex
+    public static String hash(Path file) throws IOException {
+        MessageDigest digest = sha256();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    // Same as hash(Path) for content already read
+    public static String hash(byte[] content) {
+        return HexFormat.of().formatHex(sha256().digest(content));
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
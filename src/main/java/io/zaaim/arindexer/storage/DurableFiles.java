@@ -0,0 +1,54 @@
+package io.zaaim.arindexer.storage;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Publishing files so that readers and crashes only ever see complete ones:
+ * a file is written under a temporary name, forced to disk, then renamed
+ * over its final name in one atomic step, and the directory entry is forced
+ * as well.
+ */
+public final class DurableFiles {
+
+    public static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private DurableFiles() {
+    }
+
+    public static Path temporaryFor(Path target) {
+        return target.resolveSibling(target.getFileName() + TEMPORARY_SUFFIX);
+    }
+
+    // Forces a finished temporary file to disk and atomically renames it to target
+    public static void publish(Path temporary, Path target) throws IOException {
+        force(temporary);
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        forceDirectory(target.toAbsolutePath().getParent());
+    }
+
+    public static void write(Path target, byte[] content) throws IOException {
+        Path temporary = temporaryFor(target);
+        Files.write(temporary, content);
+        publish(temporary, target);
+    }
+
+    public static void force(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+
+    // Makes a rename in the directory durable; not every platform can open a directory, which is then skipped
+    public static void forceDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // the rename itself is still atomic
+        }
+    }
+}
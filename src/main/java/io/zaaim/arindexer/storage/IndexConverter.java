@@ -0,0 +1,55 @@
+package io.zaaim.arindexer.storage;
+
+import io.zaaim.arindexer.model.Index;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Rewrites existing serialized (.ser/.idx) and XML index files in the binary layout.
+ * Usage: {@code IndexConverter <index file or directory>...}
+ */
+public class IndexConverter {
+
+    // Writes the binary copy next to the source file and returns its path
+    public static Path convert(Path source) {
+        if (!isConvertible(source)) {
+            throw new IllegalArgumentException("Not a convertible index file: " + source);
+        }
+        String name = source.getFileName().toString();
+        Path target = source.resolveSibling(name.substring(0, name.lastIndexOf('.')) + IndexFormat.BINARY.extension());
+        Index.fromFile(source).saveToFileAsBinary(target);
+        return target;
+    }
+
+    public static List<Path> convertAll(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(Files::isRegularFile)
+                    .filter(IndexConverter::isConvertible)
+                    .map(IndexConverter::convert)
+                    .collect(Collectors.toList());
+        }
+    }
+
+    // Binary and mapped segment files are already in the current layout
+    private static boolean isConvertible(Path path) {
+        IndexFormat format = IndexFormat.of(path);
+        return format == IndexFormat.SERIALIZED || format == IndexFormat.XML;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: IndexConverter <index file or directory>...");
+            System.exit(1);
+        }
+        for (String arg : args) {
+            Path path = Path.of(arg);
+            List<Path> converted = Files.isDirectory(path) ? convertAll(path) : List.of(convert(path));
+            converted.forEach(target -> System.out.println("Converted: " + target));
+        }
+    }
+}
@@ -1,8 +1,13 @@
 package io.zaaim.arindexer.storage;
 
+import java.nio.file.Path;
+
 public enum IndexFormat {
     SERIALIZED(".idx"),
-    XML(".xml");
+    XML(".xml"),
+    BINARY(".bin"),
+    // binary layout, opened through a read-only memory mapping instead of being loaded
+    MAPPED(".seg");
 
     private final String ext;
 
@@ -13,4 +18,18 @@ public enum IndexFormat {
     public String extension() {
         return ext;
     }
-}
\ No newline at end of file
+
+    // Format of an index file judged by its extension, or null if it is not an index file
+    public static IndexFormat of(Path path) {
+        String name = path.getFileName().toString();
+        if (name.endsWith(".ser")) {
+            return SERIALIZED;
+        }
+        for (IndexFormat format : values()) {
+            if (name.endsWith(format.ext)) {
+                return format;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,78 @@
+package io.zaaim.arindexer.storage;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The published version of a segmented index: the segment files that make it
+ * up and the deleted-documents file of each. Files in the index directory
+ * that the manifest does not name are either still being written or already
+ * superseded, and are never opened. A new version is published by writing
+ * the manifest through {@link DurableFiles#publish}, so readers see either
+ * the old set of files or the new one.
+ *
+ * <pre>
+ * arindexer-manifest 1
+ * version &lt;number&gt;
+ * segment &lt;segment file&gt; [&lt;deleted documents file&gt;]
+ * </pre>
+ */
+public record IndexManifest(long version, List<Entry> segments) {
+
+    public static final String FILE_NAME = "manifest";
+
+    private static final String HEADER = "arindexer-manifest 1";
+
+    // liveDocsFile is null for a segment without deletions
+    public record Entry(String segmentFile, String liveDocsFile) {
+    }
+
+    public IndexManifest {
+        segments = List.copyOf(segments);
+    }
+
+    // The manifest of directory, or null if none was published yet
+    public static IndexManifest read(Path directory) throws IOException {
+        Path path = directory.resolve(FILE_NAME);
+        if (!Files.exists(path)) {
+            return null;
+        }
+        List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+        if (lines.isEmpty() || !HEADER.equals(lines.get(0))) {
+            throw new IOException("Not an index manifest: " + path);
+        }
+        long version = -1;
+        List<Entry> segments = new ArrayList<>();
+        for (String line : lines.subList(1, lines.size())) {
+            String[] fields = line.split(" ");
+            switch (fields[0]) {
+                case "version" -> version = Long.parseLong(fields[1]);
+                case "segment" -> segments.add(new Entry(fields[1], fields.length > 2 ? fields[2] : null));
+                case "" -> {
+                }
+                default -> throw new IOException("Unexpected manifest line in " + path + ": " + line);
+            }
+        }
+        if (version < 0) {
+            throw new IOException("Manifest has no version: " + path);
+        }
+        return new IndexManifest(version, segments);
+    }
+
+    public void write(Path directory) throws IOException {
+        StringBuilder text = new StringBuilder(HEADER).append('\n');
+        text.append("version ").append(version).append('\n');
+        for (Entry entry : segments) {
+            text.append("segment ").append(entry.segmentFile());
+            if (entry.liveDocsFile() != null) {
+                text.append(' ').append(entry.liveDocsFile());
+            }
+            text.append('\n');
+        }
+        DurableFiles.write(directory.resolve(FILE_NAME), text.toString().getBytes(StandardCharsets.UTF_8));
+    }
+}
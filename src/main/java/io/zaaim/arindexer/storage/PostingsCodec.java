@@ -0,0 +1,176 @@
+package io.zaaim.arindexer.storage;
+
+import io.zaaim.arindexer.util.TfIdfCalculator;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Block encoding for one term's postings in a binary index file.
+ *
+ * <pre>
+ * skip table  per block: int last doc id, int byte offset of the block
+ *             (relative to the end of the skip table), float largest
+ *             weight / document norm in the block
+ * blocks      per block of up to 128 postings: byte doc bits, byte value bits,
+ *             bit-packed doc id gaps, bit-packed term frequencies
+ * </pre>
+ * Gaps are {@code doc - previous - 1} (the first block starts from -1), and a
+ * weight is decoded as frequency / document length. Each packed run is padded
+ * to a whole byte, so a block can be decoded on its own once its offset is
+ * known, and a block whose bound is too low for a query can be skipped without
+ * decoding it at all.
+ */
+public final class PostingsCodec {
+
+    public static final int BLOCK_SIZE = 128;
+    public static final int SKIP_ENTRY_BYTES = Integer.BYTES + Integer.BYTES + Float.BYTES;
+
+    private PostingsCodec() {
+    }
+
+    public static int blockCount(int documentFrequency) {
+        return (documentFrequency + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    }
+
+    // Weight of a posting, computed the same way when writing bounds and when searching
+    public static float weight(int frequency, int documentLength) {
+        return documentLength > 0 ? (float) frequency / documentLength : 0.0f;
+    }
+
+    // Bounds use the weights the frequencies decode to
+    public static byte[] encodeFrequencies(int[] documents, int[] frequencies, int[] documentLengths,
+                                           float[] documentNorms) {
+        float[] impacts = new float[documents.length];
+        for (int i = 0; i < documents.length; i++) {
+            impacts[i] = TfIdfCalculator.calculateImpact(weight(frequencies[i], documentLengths[documents[i]]),
+                    documentNorms[documents[i]]);
+        }
+        return encode(documents, frequencies, impacts);
+    }
+
+    private static byte[] encode(int[] documents, int[] values, float[] impacts) {
+        int blocks = blockCount(documents.length);
+        // worst case: 32-bit gaps and values plus a byte of padding per run
+        ByteBuffer out = ByteBuffer.allocate(blocks * (SKIP_ENTRY_BYTES + 4) + documents.length * 8)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        int skipTableSize = blocks * SKIP_ENTRY_BYTES;
+        out.position(skipTableSize);
+
+        int[] gaps = new int[BLOCK_SIZE];
+        int[] blockValues = new int[BLOCK_SIZE];
+        int previous = -1;
+        for (int block = 0; block < blocks; block++) {
+            int from = block * BLOCK_SIZE;
+            int count = Math.min(BLOCK_SIZE, documents.length - from);
+            int gapBits = 0;
+            int valueBits = 0;
+            float maxImpact = 0.0f;
+            for (int i = 0; i < count; i++) {
+                gaps[i] = documents[from + i] - previous - 1;
+                blockValues[i] = values[from + i];
+                previous = documents[from + i];
+                gapBits |= gaps[i];
+                valueBits |= blockValues[i];
+                maxImpact = Math.max(maxImpact, impacts[from + i]);
+            }
+            gapBits = 32 - Integer.numberOfLeadingZeros(gapBits);
+            valueBits = 32 - Integer.numberOfLeadingZeros(valueBits);
+
+            out.putInt(block * SKIP_ENTRY_BYTES, previous);
+            out.putInt(block * SKIP_ENTRY_BYTES + Integer.BYTES, out.position() - skipTableSize);
+            out.putFloat(block * SKIP_ENTRY_BYTES + Integer.BYTES + Integer.BYTES, maxImpact);
+            out.put((byte) gapBits).put((byte) valueBits);
+            pack(out, gaps, count, gapBits);
+            pack(out, blockValues, count, valueBits);
+        }
+
+        byte[] encoded = new byte[out.position()];
+        out.get(0, encoded);
+        return encoded;
+    }
+
+    // Decodes a whole posting list into doc ids and term frequencies, for loading it onto the heap
+    public static void decodeValues(ByteBuffer in, int offset, int[] documents, int[] values) {
+        int[] blockDocuments = new int[BLOCK_SIZE];
+        int[] blockValues = new int[BLOCK_SIZE];
+        int blocks = blockCount(documents.length);
+        int previous = -1;
+        for (int block = 0; block < blocks; block++) {
+            int from = block * BLOCK_SIZE;
+            int count = Math.min(BLOCK_SIZE, documents.length - from);
+            decodeBlock(in, blockOffset(in, offset, documents.length, block), count, previous,
+                    blockDocuments, blockValues);
+            System.arraycopy(blockDocuments, 0, documents, from, count);
+            System.arraycopy(blockValues, 0, values, from, count);
+            previous = blockDocuments[count - 1];
+        }
+    }
+
+    public static int lastDocument(ByteBuffer in, int offset, int block) {
+        return in.getInt(offset + block * SKIP_ENTRY_BYTES);
+    }
+
+    // Absolute position of a block
+    public static int blockOffset(ByteBuffer in, int offset, int documentFrequency, int block) {
+        int skipTableSize = blockCount(documentFrequency) * SKIP_ENTRY_BYTES;
+        return offset + skipTableSize + in.getInt(offset + block * SKIP_ENTRY_BYTES + Integer.BYTES);
+    }
+
+    public static float blockMaxImpact(ByteBuffer in, int offset, int block) {
+        return in.getFloat(offset + block * SKIP_ENTRY_BYTES + Integer.BYTES + Integer.BYTES);
+    }
+
+    // Fills doc ids and stored values of one block; previous is the last doc id of the block before
+    public static void decodeBlock(ByteBuffer in, int offset, int count, int previous,
+                                   int[] documents, int[] values) {
+        int gapBits = in.get(offset);
+        int valueBits = in.get(offset + 1);
+        int position = unpack(in, offset + 2, gapBits, documents, count);
+        unpack(in, position, valueBits, values, count);
+        for (int i = 0; i < count; i++) {
+            previous += documents[i] + 1;
+            documents[i] = previous;
+        }
+    }
+
+    private static void pack(ByteBuffer out, int[] values, int count, int bits) {
+        long buffer = 0;
+        int used = 0;
+        for (int i = 0; i < count; i++) {
+            buffer |= (values[i] & 0xFFFFFFFFL) << used;
+            used += bits;
+            while (used >= 8) {
+                out.put((byte) buffer);
+                buffer >>>= 8;
+                used -= 8;
+            }
+        }
+        if (used > 0) {
+            out.put((byte) buffer);
+        }
+    }
+
+    // Returns the position just after the packed run
+    private static int unpack(ByteBuffer in, int position, int bits, int[] values, int count) {
+        if (bits == 0) {
+            for (int i = 0; i < count; i++) {
+                values[i] = 0;
+            }
+            return position;
+        }
+        long mask = (1L << bits) - 1;
+        long buffer = 0;
+        int available = 0;
+        for (int i = 0; i < count; i++) {
+            while (available < bits) {
+                buffer |= (in.get(position++) & 0xFFL) << available;
+                available += 8;
+            }
+            values[i] = (int) (buffer & mask);
+            buffer >>>= bits;
+            available -= bits;
+        }
+        return position;
+    }
+}
@@ -1,5 +1,8 @@
 package io.zaaim.arindexer.util;
 
+import io.zaaim.arindexer.service.SearchMode;
+import io.zaaim.arindexer.storage.IndexFormat;
+
 import java.nio.file.Path;
 import java.nio.file.Paths;
 
@@ -9,4 +12,44 @@ public class Constants {
     public static final Path STORAGE_DIR = Paths.get(System.getProperty("save.dir", "saved-texts")).toAbsolutePath();
     public static final Path INDEXES_DIR = Paths.get(System.getProperty("index.dir", "indexes")).toAbsolutePath();
 
+    // Format /startIndexing writes (-Dindex.format=binary|mapped); mapped segments are searched without loading them
+    public static final IndexFormat INDEX_FORMAT = IndexFormat.valueOf(System.getProperty("index.format", "binary").toUpperCase());
+
+    // Default query evaluation (-Dsearch.mode=exhaustive|wand|block_max_wand); /search?mode= overrides it per query
+    public static final SearchMode SEARCH_MODE = SearchMode.of(System.getProperty("search.mode", "block_max_wand"));
+
+    // Segmented index /startIndexing rebuilds and /document/add appends to
+    public static final String DEFAULT_INDEX = "index";
+
+    // Segments of one tier merged together (-Dindex.merge.factor); larger values merge less often but search more segments
+    public static final int MERGE_FACTOR = Integer.getInteger("index.merge.factor", 10);
+
+    // How often documents added to a segmented index become searchable (-Dindex.refresh.interval, ms; 0 = only on request)
+    public static final long REFRESH_INTERVAL_MS = Long.getLong("index.refresh.interval", 1000);
+
+    // Refreshed documents kept in memory before they are written out as a segment file (-Dindex.flush.documents)
+    public static final int FLUSH_DOCUMENTS = Integer.getInteger("index.flush.documents", 1000);
+
+    // Heap the indexer fills with postings before spilling a sorted run to disk (-Dindexer.memory.bytes, defaults to an eighth of the heap)
+    public static final long INDEXER_MEMORY_BYTES = Long.getLong("indexer.memory.bytes", Runtime.getRuntime().maxMemory() / 8);
+
+    // Threads of each indexing stage: file reads (-Dindexer.readers), tokenizing and stemming (-Dindexer.analyzers)
+    // and adding to the in-memory postings (-Dindexer.inverters), connected by queues of -Dindexer.queue documents
+    public static final int INDEXER_READ_THREADS = Integer.getInteger("indexer.readers", 2);
+    public static final int INDEXER_ANALYSIS_THREADS = Integer.getInteger("indexer.analyzers", Runtime.getRuntime().availableProcessors());
+    public static final int INDEXER_INVERSION_THREADS = Integer.getInteger("indexer.inverters", Math.max(1, Runtime.getRuntime().availableProcessors() / 4));
+    public static final int INDEXER_QUEUE_CAPACITY = Integer.getInteger("indexer.queue", 256);
+
+    // Analyzed term frequencies kept by content hash, so reindexing skips stemming unchanged text (-Danalysis.cache.dir; empty disables it)
+    public static final String ANALYSIS_CACHE_DIR = System.getProperty("analysis.cache.dir", "analysis-cache");
+
+    // Disk budget of the analysis cache, which every index shares; least recently used entries go first (-Danalysis.cache.maxBytes)
+    public static final long ANALYSIS_CACHE_MAX_BYTES = Long.getLong("analysis.cache.maxBytes", 1L << 30);
+
+    // Words whose stems are kept in memory, shared by indexing and queries (-Dstem.cache.size; 0 disables it)
+    public static final int STEM_CACHE_SIZE = Integer.getInteger("stem.cache.size", 1 << 17);
+
+    // Heap budget for loaded indexes kept by IndexCache (-Dindex.cache.maxBytes, defaults to a quarter of the heap)
+    public static final long INDEX_CACHE_MAX_BYTES = Long.getLong("index.cache.maxBytes", Runtime.getRuntime().maxMemory() / 4);
+
 }
@@ -0,0 +1,60 @@
+package io.zaaim.arindexer.util;
+
+import java.util.Arrays;
+
+/**
+ * Dense per-document score accumulator for term-at-a-time scoring.
+ * Only the documents touched by a query are remembered and reset, so a
+ * reused accumulator costs work proportional to the postings visited.
+ */
+public class ScoreAccumulator {
+
+    private static final ThreadLocal<ScoreAccumulator> LOCAL = ThreadLocal.withInitial(ScoreAccumulator::new);
+
+    private float[] scores = new float[0];
+    private boolean[] seen = new boolean[0];
+    private int[] touched = new int[16];
+    private int touchedCount;
+
+    // Per-thread instance, cleared and sized for the given number of documents
+    public static ScoreAccumulator forDocuments(int documentCount) {
+        ScoreAccumulator accumulator = LOCAL.get();
+        accumulator.reset(documentCount);
+        return accumulator;
+    }
+
+    public void add(int docId, float value) {
+        if (!seen[docId]) {
+            seen[docId] = true;
+            if (touchedCount == touched.length) {
+                touched = Arrays.copyOf(touched, touchedCount * 2);
+            }
+            touched[touchedCount++] = docId;
+        }
+        scores[docId] += value;
+    }
+
+    public int touchedCount() {
+        return touchedCount;
+    }
+
+    public int touched(int i) {
+        return touched[i];
+    }
+
+    public float score(int docId) {
+        return scores[docId];
+    }
+
+    private void reset(int documentCount) {
+        for (int i = 0; i < touchedCount; i++) {
+            scores[touched[i]] = 0.0f;
+            seen[touched[i]] = false;
+        }
+        touchedCount = 0;
+        if (scores.length < documentCount) {
+            scores = new float[documentCount];
+            seen = new boolean[documentCount];
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package io.zaaim.arindexer.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Tokenizes encoded text a chunk at a time: bytes are read from a channel
+ * into a fixed buffer, decoded into a fixed char buffer and tokenized from
+ * there, so a file of any size is analyzed in constant memory and never held
+ * as one string. Malformed or unmappable input fails with a
+ * {@link java.nio.charset.CharacterCodingException} rather than being replaced.
+ * <p>
+ * An instance keeps its decoder and buffers between calls and is not
+ * thread-safe; {@link #utf8()} hands out one per thread.
+ */
+public final class StreamingTokenizer {
+
+    private static final int BYTE_BUFFER_SIZE = 64 * 1024;
+    private static final int CHAR_BUFFER_SIZE = 32 * 1024;
+
+    private static final ThreadLocal<StreamingTokenizer> UTF8 =
+            ThreadLocal.withInitial(() -> new StreamingTokenizer(StandardCharsets.UTF_8));
+
+    private final CharsetDecoder decoder;
+    private final ByteBuffer bytes = ByteBuffer.allocateDirect(BYTE_BUFFER_SIZE);
+    private final CharBuffer chars = CharBuffer.allocate(CHAR_BUFFER_SIZE);
+
+    private StreamingTokenizer(Charset charset) {
+        this.decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+    }
+
+    // The calling thread's UTF-8 instance
+    public static StreamingTokenizer utf8() {
+        return UTF8.get();
+    }
+
+    public static StreamingTokenizer forCharset(Charset charset) {
+        return StandardCharsets.UTF_8.equals(charset) ? utf8() : new StreamingTokenizer(charset);
+    }
+
+    public void tokenize(Path file, Tokenizer.TokenHandler handler) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            bytes.clear().flip();
+            tokenize(channel, bytes, handler);
+        }
+    }
+
+    // Content already in memory is decoded in place, without copying it
+    public void tokenize(byte[] content, Tokenizer.TokenHandler handler) throws IOException {
+        tokenize(null, ByteBuffer.wrap(content), handler);
+    }
+
+    // in is in read mode; channel is null when in already holds the whole input
+    private void tokenize(ReadableByteChannel channel, ByteBuffer in, Tokenizer.TokenHandler handler)
+            throws IOException {
+        decoder.reset();
+        chars.clear();
+        boolean endOfInput = channel == null;
+        boolean done = false;
+        while (!done) {
+            if (!endOfInput) {
+                in.compact();
+                endOfInput = channel.read(in) < 0;
+                in.flip();
+            }
+            CoderResult result = decoder.decode(in, chars, endOfInput);
+            if (result.isError()) {
+                result.throwException();
+            }
+            done = endOfInput && result.isUnderflow();
+            if (done) {
+                decoder.flush(chars);
+            }
+
+            chars.flip();
+            int consumed = Tokenizer.tokenize(chars, done, handler);
+            if (consumed == 0 && chars.remaining() == chars.capacity()) {
+                // a single token fills the buffer; it is cut rather than the buffer grown
+                consumed = Tokenizer.tokenize(chars, true, handler);
+            }
+            chars.position(chars.position() + consumed);
+            chars.compact();
+        }
+    }
+}
@@ -2,9 +2,11 @@ package io.zaaim.arindexer.util;
 
 import io.zaaim.arindexer.model.StopWords;
 import io.zaaim.arindexer.stemmer.ArabicStemmerKhoja;
+import io.zaaim.arindexer.stemmer.CachingStemmer;
 import io.zaaim.arindexer.stemmer.Stemmer;
 
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
@@ -12,27 +14,61 @@ import java.util.Set;
 
 public class TextProcessor {
 
-    private static final Stemmer DEFAULT_STEMMER = new ArabicStemmerKhoja();
+    // Bump when tokenizing, stop words or stemming change what processDocument returns; cached analyses are keyed by it
+    public static final int ANALYSIS_VERSION = 2;
+
+    // the same instance stems documents and queries, so the words of one are already cached for the other
+    private static final Stemmer DEFAULT_STEMMER = Constants.STEM_CACHE_SIZE > 0
+            ? new CachingStemmer(new ArabicStemmerKhoja(), Constants.STEM_CACHE_SIZE)
+            : new ArabicStemmerKhoja();
     private static Set<String> cachedStopWords;
 
     public static Map<String, Integer> processDocument(String document) throws IOException {
         Map<String, Integer> termFrequency = new HashMap<>();
-        String[] tokens = Tokenizer.tokenize(document);
-        tokens = removeStopWords(tokens);
+        // tokens go straight from the text to the stemmer, without an intermediate array
+        Tokenizer.tokenize(document, termCounter(termFrequency));
+        return termFrequency;
+    }
 
-        for (String token : tokens) {
-            String stemmed = DEFAULT_STEMMER.stem(token);
-            termFrequency.put(stemmed, termFrequency.getOrDefault(stemmed, 0) + 1);
-        }
+    // UTF-8 content already read, decoded chunk by chunk instead of into one string
+    public static Map<String, Integer> processDocument(byte[] content) throws IOException {
+        Map<String, Integer> termFrequency = new HashMap<>();
+        StreamingTokenizer.utf8().tokenize(content, termCounter(termFrequency));
         return termFrequency;
     }
 
+    // A UTF-8 file streamed from disk, so its size does not matter; malformed input fails
+    public static Map<String, Integer> processFile(Path file) throws IOException {
+        Map<String, Integer> termFrequency = new HashMap<>();
+        StreamingTokenizer.utf8().tokenize(file, termCounter(termFrequency));
+        return termFrequency;
+    }
+
+    private static Tokenizer.TokenHandler termCounter(Map<String, Integer> termFrequency) throws IOException {
+        Set<String> stopWords = stopWords();
+        return (text, start, end) -> {
+            String token = text.subSequence(start, end).toString();
+            if (!stopWords.contains(token)) {
+                termFrequency.merge(DEFAULT_STEMMER.stem(token), 1, Integer::sum);
+            }
+        };
+    }
+
+    public static Stemmer getStemmer() {
+        return DEFAULT_STEMMER;
+    }
+
     public static String[] removeStopWords(String[] tokens) throws IOException {
+        Set<String> stopWords = stopWords();
+        return Arrays.stream(tokens)
+                .filter(token -> !stopWords.contains(token))
+                .toArray(String[]::new);
+    }
+
+    private static Set<String> stopWords() throws IOException {
         if (cachedStopWords == null) {
             cachedStopWords = new StopWords().getStopWords();
         }
-        return Arrays.stream(tokens)
-                .filter(token -> !cachedStopWords.contains(token))
-                .toArray(String[]::new);
+        return cachedStopWords;
     }
-}
\ No newline at end of file
+}
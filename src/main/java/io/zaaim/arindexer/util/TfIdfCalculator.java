@@ -1,95 +1,77 @@
 package io.zaaim.arindexer.util;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.function.ToDoubleFunction;
 import java.util.stream.Collectors;
 
 public class TfIdfCalculator {
 
-    public static Map<String, Map<String, Float>> calculateTfIdf(Map<String, Map<String, Integer>> invertedIndex) {
-        int totalDocuments = invertedIndex.size();
-
-        // Calculate document frequency for each term
-        Map<String, Integer> documentFrequency = invertedIndex.values().parallelStream()
-                .flatMap(docTerms -> docTerms.keySet().stream())
-                .collect(Collectors.toConcurrentMap(
-                        term -> term,
-                        term -> 1,
-                        Integer::sum
-                ));
-
-        // Calculate TF-IDF for each document
+    // Term frequencies divided by document length; idf is applied at search time from collection statistics
+    public static Map<String, Map<String, Float>> calculateTf(Map<String, Map<String, Integer>> invertedIndex) {
         return invertedIndex.entrySet().parallelStream()
                 .collect(Collectors.toMap(
                         Map.Entry::getKey,
-                        entry -> calculateDocumentTfIdf(entry.getValue(), totalDocuments, documentFrequency)
+                        entry -> calculateDocumentTf(entry.getValue())
                 ));
     }
 
-    public static Map<String, Float> calculateQueryTfIdf(Map<String, Integer> queryTermFreq,
-                                                          Map<String, Integer> documentFrequency,
-                                                          int totalDocuments) {
-        int totalTermsInQuery = queryTermFreq.values().stream().mapToInt(Integer::intValue).sum();
+    public static Map<String, Float> calculateDocumentTf(Map<String, Integer> termFrequencies) {
+        int totalTermsInDoc = termFrequencies.values().stream()
+                .mapToInt(Integer::intValue)
+                .sum();
 
-        return queryTermFreq.entrySet().stream()
+        return termFrequencies.entrySet().stream()
                 .collect(Collectors.toMap(
                         Map.Entry::getKey,
-                        entry -> {
-                            String term = entry.getKey();
-                            int termCount = entry.getValue();
-                            float tf = (float) termCount / totalTermsInQuery;
-                            int df = documentFrequency.getOrDefault(term, 0);
-                            float idf = df > 0 ? (float) Math.log((double) totalDocuments / df) : 0;
-                            return tf * idf;
-                        }
+                        termEntry -> (float) termEntry.getValue() / totalTermsInDoc
                 ));
     }
 
-    private static Map<String, Float> calculateDocumentTfIdf(Map<String, Integer> termFrequencies,
-                                                              int totalDocuments,
-                                                              Map<String, Integer> documentFrequency) {
-        int totalTermsInDoc = termFrequencies.values().stream()
-                .mapToInt(Integer::intValue)
-                .sum();
+    public static float calculateIdf(int totalDocuments, int documentFrequency) {
+        return documentFrequency > 0 ? (float) Math.log((double) totalDocuments / documentFrequency) : 0;
+    }
 
-        return termFrequencies.entrySet().stream()
+    public static Map<String, Float> calculateQueryTfIdf(Map<String, Integer> queryTermFreq,
+                                                          Map<String, Float> inverseDocumentFrequency) {
+        int totalTermsInQuery = queryTermFreq.values().stream().mapToInt(Integer::intValue).sum();
+
+        return queryTermFreq.entrySet().stream()
                 .collect(Collectors.toMap(
                         Map.Entry::getKey,
-                        termEntry -> {
-                            String term = termEntry.getKey();
-                            int termCount = termEntry.getValue();
-                            float tf = (float) termCount / totalTermsInDoc;
-                            float idf = (float) Math.log((double) totalDocuments / documentFrequency.get(term));
-                            return tf * idf;
+                        entry -> {
+                            float tf = (float) entry.getValue() / totalTermsInQuery;
+                            return tf * inverseDocumentFrequency.getOrDefault(entry.getKey(), 0.0f);
                         }
                 ));
     }
 
-    public static float calculateCosineSimilarity(Map<String, Float> vectorA, Map<String, Float> vectorB) {
-        float dotProduct = 0.0f;
-        float normA = 0.0f;
-        float normB = 0.0f;
-
-        for (Map.Entry<String, Float> entry : vectorA.entrySet()) {
-            String term = entry.getKey();
-            float valueA = entry.getValue();
-            float valueB = vectorB.getOrDefault(term, 0.0f);
-
-            dotProduct += valueA * valueB;
-            normA += valueA * valueA;
+    public static float calculateNorm(Map<String, Float> vector) {
+        float norm = 0.0f;
+        for (float value : vector.values()) {
+            norm += value * value;
         }
+        return (float) Math.sqrt(norm);
+    }
 
-        for (float value : vectorB.values()) {
-            normB += value * value;
+    // Norm of a document's TF-IDF vector, from its normalized term frequencies
+    public static float calculateNorm(Map<String, Float> termFrequencies, ToDoubleFunction<String> inverseDocumentFrequency) {
+        float norm = 0.0f;
+        for (Map.Entry<String, Float> entry : termFrequencies.entrySet()) {
+            float weight = entry.getValue() * (float) inverseDocumentFrequency.applyAsDouble(entry.getKey());
+            norm += weight * weight;
         }
+        return (float) Math.sqrt(norm);
+    }
 
-        normA = (float) Math.sqrt(normA);
-        normB = (float) Math.sqrt(normB);
+    // Contribution of one posting to a cosine score per unit of query weight
+    public static float calculateImpact(float weight, float documentNorm) {
+        return documentNorm == 0.0f ? 0.0f : weight / documentNorm;
+    }
 
+    public static float calculateCosineSimilarity(float dotProduct, float normA, float normB) {
         if (normA == 0.0f || normB == 0.0f) {
             return 0.0f;
         }
-
         return dotProduct / (normA * normB);
     }
-}
\ No newline at end of file
+}
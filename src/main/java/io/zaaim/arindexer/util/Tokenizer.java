@@ -1,42 +1,96 @@
 package io.zaaim.arindexer.util;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
-
-import java.io.InputStreamReader;
+import java.io.IOException;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.List;
 
 
+/**
+ * Splits text into tokens: runs of letters, digits and combining marks, so
+ * harakat stay inside their word. Everything else separates tokens, including
+ * whitespace and Latin and Arabic punctuation such as ، ؛ ؟. Characters up
+ * to the end of the Arabic block are classified through a lookup table, and
+ * tokens are reported as offsets into the text, so nothing is allocated for
+ * a token the caller does not turn into a string.
+ */
 public class Tokenizer{
-    public static String[] tokenize(String text) {
-        String inputText = text.trim();
-        String[] tokens = inputText.split("\\s+");
-        return tokens;
+
+    // Receives each token as the range [start, end) of text
+    @FunctionalInterface
+    public interface TokenHandler {
+        void token(CharSequence text, int start, int end);
     }
 
-    public static String[] tokenize(String text, boolean withUniqueTokens) {
-        if (!withUniqueTokens) {
-            return tokenize(text);
-        } else {
-            String[] tokens = tokenize(text);
-            List<String> list = new ArrayList();
-
-            for(String token : tokens) {
-                if (!list.contains(token)) {
-                    list.add(token);
-                }
-            }
+    // Latin, Greek, Cyrillic, Hebrew and Arabic characters are classified once; the rest case by case
+    private static final int TABLE_SIZE = 0x0700;
+    private static final boolean[] TOKEN_CHARS = new boolean[TABLE_SIZE];
 
-            String[] result = new String[list.size()];
+    static {
+        for (int c = 0; c < TABLE_SIZE; c++) {
+            TOKEN_CHARS[c] = isTokenCodePoint(c);
+        }
+    }
 
-            for(int i = 0; i < list.size(); ++i) {
-                result[i] = (String)list.get(i);
-            }
+    public static void tokenize(CharSequence text, TokenHandler handler) {
+        tokenize(text, true, handler);
+    }
 
-            return result;
+    /**
+     * Tokenizes a chunk of a longer text. Unless it is the end of the input, a
+     * token running up to the end of the chunk may continue in the next one, so
+     * it is held back; returns how many chars were consumed, the rest have to
+     * be passed again at the start of the next chunk.
+     */
+    public static int tokenize(CharSequence text, boolean endOfInput, TokenHandler handler) {
+        int length = text.length();
+        int start = -1;
+        int i = 0;
+        while (i < length) {
+            char c = text.charAt(i);
+            int width = 1;
+            boolean token;
+            if (c < TABLE_SIZE) {
+                token = TOKEN_CHARS[c];
+            } else if (Character.isHighSurrogate(c) && i + 1 == length && !endOfInput) {
+                // the low surrogate is in the next chunk
+                return start >= 0 ? start : i;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                token = isTokenCodePoint(Character.toCodePoint(c, text.charAt(i + 1)));
+                width = 2;
+            } else {
+                token = isTokenCodePoint(c);
+            }
+            if (token) {
+                if (start < 0) {
+                    start = i;
+                }
+            } else if (start >= 0) {
+                handler.token(text, start, i);
+                start = -1;
+            }
+            i += width;
         }
+        if (start >= 0) {
+            if (!endOfInput) {
+                return start;
+            }
+            handler.token(text, start, length);
+        }
+        return length;
+    }
+
+    public static String[] tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        tokenize(text, (source, start, end) -> tokens.add(text.substring(start, end)));
+        return tokens.toArray(new String[0]);
+    }
+
+    public static String[] tokenize(String text, boolean withUniqueTokens) {
+        return withUniqueTokens ? unique(tokenize(text)) : tokenize(text);
     }
 
     public static String[] tokenize(File inputFile) {
@@ -47,54 +101,33 @@ public class Tokenizer{
         return tokenizeFile(inputFile, inputEncoding, withUniqueTokens);
     }
 
-
+    // Streams the file through a reusable decoder; unreadable or malformed files fail instead of returning null
     private static String[] tokenizeFile(File inputFile, String inputEncoding) {
-        StringBuilder sb = new StringBuilder();
-        String[] tokens = null;
-
+        List<String> tokens = new ArrayList<>();
         try {
-            FileInputStream fis = new FileInputStream(inputFile);
-            InputStreamReader ipsr = new InputStreamReader(fis, inputEncoding);
-            BufferedReader brd = new BufferedReader(ipsr);
-
-            String in;
-            while((in = brd.readLine()) != null) {
-                sb.append(in);
-                sb.append("\n");
-            }
-
-            tokens = tokenize(sb.toString());
-            brd.close();
-            fis.close();
-        } catch (Exception e) {
-
+            StreamingTokenizer.forCharset(Charset.forName(inputEncoding)).tokenize(inputFile.toPath(),
+                    (text, start, end) -> tokens.add(text.subSequence(start, end).toString()));
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to tokenize file: " + inputFile, e);
         }
-
-        return tokens;
+        return tokens.toArray(new String[0]);
     }
 
     private static String[] tokenizeFile(File inputFile, String inputEncoding, boolean withUniqueTokens) {
-        if (!withUniqueTokens) {
-            return tokenizeFile(inputFile, inputEncoding);
-        } else {
-            String[] tokens = tokenizeFile(inputFile, inputEncoding);
-            List<String> list = new ArrayList();
-
-            for(String token : tokens) {
-                if (!list.contains(token)) {
-                    list.add(token);
-                }
-            }
-
-            String[] result = new String[list.size()];
+        String[] tokens = tokenizeFile(inputFile, inputEncoding);
+        return withUniqueTokens ? unique(tokens) : tokens;
+    }
 
-            for(int i = 0; i < list.size(); ++i) {
-                result[i] = (String)list.get(i);
-            }
+    // First occurrences in order
+    private static String[] unique(String[] tokens) {
+        return new LinkedHashSet<>(Arrays.asList(tokens)).toArray(new String[0]);
+    }
 
-            return result;
+    private static boolean isTokenCodePoint(int codePoint) {
+        if (Character.isLetterOrDigit(codePoint)) {
+            return true;
         }
+        int type = Character.getType(codePoint);
+        return type == Character.NON_SPACING_MARK || type == Character.COMBINING_SPACING_MARK;
     }
-
-
 }
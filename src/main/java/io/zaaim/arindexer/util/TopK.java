@@ -0,0 +1,103 @@
+package io.zaaim.arindexer.util;
+
+import io.zaaim.arindexer.model.ScoredDocument;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Keeps the k best scoring doc ids in a fixed-size binary min-heap.
+ * Ids and scores live in primitive arrays and the heap never grows, so
+ * offering a candidate allocates nothing; the weakest kept score is
+ * available as the entry threshold for the next candidate.
+ */
+public class TopK {
+
+    private final float[] scores;
+    private final int[] documents;
+    private int size;
+
+    public TopK(int k) {
+        int capacity = Math.max(k, 0);
+        this.scores = new float[capacity];
+        this.documents = new int[capacity];
+    }
+
+    public boolean offer(int document, float score) {
+        if (size < scores.length) {
+            scores[size] = score;
+            documents[size] = document;
+            siftUp(size++);
+            return true;
+        }
+        if (size == 0 || score <= scores[0]) {
+            return false;
+        }
+        scores[0] = score;
+        documents[0] = document;
+        siftDown(0);
+        return true;
+    }
+
+    // Lowest score still in the heap, or negative infinity while it is not full
+    public float threshold() {
+        return size < scores.length || size == 0 ? Float.NEGATIVE_INFINITY : scores[0];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Drains the heap, best score first, resolving doc ids to names only now
+    public List<ScoredDocument> toSortedList(IntFunction<String> documentNames) {
+        List<ScoredDocument> results = new ArrayList<>(size);
+        while (size > 0) {
+            results.add(new ScoredDocument(documentNames.apply(documents[0]), scores[0]));
+            size--;
+            scores[0] = scores[size];
+            documents[0] = documents[size];
+            siftDown(0);
+        }
+        Collections.reverse(results);
+        return results;
+    }
+
+    private void siftUp(int i) {
+        float score = scores[i];
+        int document = documents[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (scores[parent] <= score) {
+                break;
+            }
+            scores[i] = scores[parent];
+            documents[i] = documents[parent];
+            i = parent;
+        }
+        scores[i] = score;
+        documents[i] = document;
+    }
+
+    private void siftDown(int i) {
+        float score = scores[i];
+        int document = documents[i];
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            int right = child + 1;
+            if (right < size && scores[right] < scores[child]) {
+                child = right;
+            }
+            if (score <= scores[child]) {
+                break;
+            }
+            scores[i] = scores[child];
+            documents[i] = documents[child];
+            i = child;
+        }
+        scores[i] = score;
+        documents[i] = document;
+    }
+}
@@ -248,10 +248,18 @@ async function startIndexing() {
         const response = await fetch(`${API_BASE}/startIndexing`);
         if (!response.ok) throw new Error('Indexing failed');
 
-        const result = await response.text();
+        // indexing runs as a background job; poll it until it is done
+        let job = await response.json();
+        while (job.state === 'QUEUED' || job.state === 'RUNNING') {
+            await new Promise(resolve => setTimeout(resolve, 1000));
+            const status = await fetch(`${API_BASE}/jobs/${job.id}`);
+            if (!status.ok) throw new Error('Indexing job lost');
+            job = await status.json();
+        }
         modal.classList.remove('show');
+        if (job.state !== 'SUCCEEDED') throw new Error(job.error || job.state);
 
-        showMessage(`✅ ${result}`, 'success');
+        showMessage(`✅ ${job.result}`, 'success');
 
         // Reload indexes after a short delay
         setTimeout(() => loadIndexes(), 1000);
@@ -0,0 +1,106 @@
+package io.zaaim.arindexer.model;
+
+import io.zaaim.arindexer.util.TfIdfCalculator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IndexTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void xmlExportRoundTripsExactly() throws IOException {
+        Random random = new Random(11);
+        Map<String, Map<String, Integer>> termFrequencies = new HashMap<>();
+        for (int doc = 0; doc < 300; doc++) {
+            Map<String, Integer> document = new HashMap<>();
+            // long documents, whose weights a 16-bit quantization could not tell apart
+            int terms = 1 + random.nextInt(40);
+            for (int i = 0; i < terms; i++) {
+                document.put("كلمة" + random.nextInt(500), 1 + random.nextInt(i % 10 == 0 ? 50_000 : 5));
+            }
+            termFrequencies.put(String.format("مقالات/doc-%03d.txt", doc), document);
+        }
+        Index index = Index.fromTermFrequencies(termFrequencies, Map.of());
+        Path path = directory.resolve("index.xml");
+
+        index.saveToFileAsXml(path);
+        assertTrue(Files.readString(path, StandardCharsets.UTF_8).contains("مقالات/doc-000.txt"));
+        Index loaded = Index.loadIndexFromXml(path);
+
+        assertEquals(index.getDocumentCount(), loaded.getDocumentCount());
+        assertArrayEquals(index.getDocumentLengths(), loaded.getDocumentLengths());
+        for (int docId = 0; docId < index.getDocumentCount(); docId++) {
+            assertEquals(index.getDocumentName(docId), loaded.getDocumentName(docId));
+            assertEquals(index.getDocumentNorm(docId), loaded.getDocumentNorm(docId));
+        }
+        assertEquals(index.getTermCount(), loaded.getTermCount());
+        for (int termId = 0; termId < index.getTermCount(); termId++) {
+            assertEquals(index.getTerm(termId), loaded.getTerm(termId));
+            assertEquals(index.getInverseDocumentFrequency(termId), loaded.getInverseDocumentFrequency(termId));
+            assertArrayEquals(index.getPostingDocuments(termId), loaded.getPostingDocuments(termId));
+            assertArrayEquals(index.getPostingWeights(termId), loaded.getPostingWeights(termId));
+        }
+    }
+
+    @Test
+    void documentMajorXmlIsReadAsTermFrequencies() throws IOException {
+        // as the document-major Index exported it: TF-IDF weights of normalized term frequencies
+        Map<String, Map<String, Integer>> termFrequencies = Map.of(
+                "a.txt", Map.of("كتب", 2, "درس", 1, "في", 5),
+                "b.txt", Map.of("علم", 3, "في", 1),
+                "c.txt", Map.of("كتب", 1, "علم", 700, "بيت", 1299, "في", 3));
+        Map<String, Map<String, Float>> tf = TfIdfCalculator.calculateTf(termFrequencies);
+        Path path = directory.resolve("legacy.xml");
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<index>\n  <entries>\n");
+            for (Map.Entry<String, Map<String, Float>> entry : tf.entrySet()) {
+                writer.write("    <entry key=\"" + entry.getKey() + "\">\n");
+                for (Map.Entry<String, Float> weight : entry.getValue().entrySet()) {
+                    long df = termFrequencies.values().stream().filter(doc -> doc.containsKey(weight.getKey())).count();
+                    float tfIdf = weight.getValue() * TfIdfCalculator.calculateIdf(3, (int) df);
+                    writer.write("      <vector term=\"" + weight.getKey() + "\" score=\"" + tfIdf + "\"/>\n");
+                }
+                writer.write("    </entry>\n");
+            }
+            writer.write("  </entries>\n</index>\n");
+        }
+
+        Index index = Index.loadIndexFromXml(path);
+
+        assertEquals(8, index.getDocumentLength(index.getDocumentId("a.txt")));
+        assertEquals(2003, index.getDocumentLength(index.getDocumentId("c.txt")));
+        assertEquals(2.0f / 8, weight(index, "a.txt", "كتب"));
+        assertEquals(1299.0f / 2003, weight(index, "c.txt", "بيت"));
+        // "في" is in every document, so its idf and exported weight are 0; only its frequency is lost
+        assertEquals(0.0f, weight(index, "c.txt", "في"));
+
+        Path binary = directory.resolve("legacy.bin");
+        index.saveToFileAsBinary(binary);
+        Index reloaded = Index.loadIndexFromBinary(binary);
+        assertArrayEquals(index.getDocumentLengths(), reloaded.getDocumentLengths());
+        for (int termId = 0; termId < index.getTermCount(); termId++) {
+            assertArrayEquals(index.getPostingWeights(termId), reloaded.getPostingWeights(termId));
+        }
+    }
+
+    private static float weight(Index index, String document, String term) {
+        int docId = index.getDocumentId(document);
+        PostingsIterator postings = index.postings(index.getTermId(term));
+        return postings.advance(docId) == docId ? postings.weight() : -1.0f;
+    }
+}
@@ -0,0 +1,42 @@
+package io.zaaim.arindexer.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class IndexRegistryTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void namesThatLeaveTheIndexesDirectoryAreRejected() throws Exception {
+        Path indexes = Files.createDirectory(directory.resolve("indexes"));
+        IndexRegistry registry = new IndexRegistry(indexes, new IndexCache(indexes, 0));
+        for (String name : new String[]{"..", ".", "../indexes", "a/b", "a\\b", "", " "}) {
+            assertThrows(IllegalArgumentException.class, () -> registry.find(name), name);
+            assertThrows(IllegalArgumentException.class, () -> registry.getOrCreate(name), name);
+        }
+        assertThrows(IllegalArgumentException.class, () -> registry.find(null));
+        // nothing was opened next to or above the indexes
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    void unknownNameIsNotCreated() throws Exception {
+        IndexRegistry registry = new IndexRegistry(directory, new IndexCache(directory, 0));
+        assertNull(registry.find("news-2024_v1.0"));
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+    }
+}
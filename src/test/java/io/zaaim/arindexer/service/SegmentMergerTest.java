@@ -0,0 +1,78 @@
+package io.zaaim.arindexer.service;
+
+import io.zaaim.arindexer.model.Index;
+import io.zaaim.arindexer.model.LiveDocs;
+import io.zaaim.arindexer.model.LiveSegment;
+import io.zaaim.arindexer.model.PostingsIterator;
+import io.zaaim.arindexer.model.Segment;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SegmentMergerTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void deletedDocumentsDoNotSurviveMerge() {
+        Index first = index(Map.of(
+                "a.txt", Map.of("كتب", 2, "درس", 1),
+                "b.txt", Map.of("كتب", 1, "علم", 3),
+                "c.txt", Map.of("حذف", 4)));
+        Index second = index(Map.of(
+                "d.txt", Map.of("درس", 2, "علم", 1),
+                "e.txt", Map.of("كتب", 5)));
+        LiveDocs firstLive = LiveDocs.all(3).withDeleted(
+                new int[]{first.getDocumentId("b.txt"), first.getDocumentId("c.txt")}, 2);
+        LiveDocs secondLive = LiveDocs.all(2).withDeleted(new int[]{second.getDocumentId("e.txt")}, 1);
+
+        // deletes as saved next to a segment file and read back
+        Path liveDocsPath = directory.resolve("segment-000001.del");
+        firstLive.write(liveDocsPath);
+        firstLive = LiveDocs.read(liveDocsPath, 3);
+
+        Index merged = SegmentMerger.merge(List.of(new LiveSegment(first, firstLive),
+                new LiveSegment(second, secondLive)), term -> 1.0);
+
+        assertEquals(2, merged.getDocumentCount());
+        assertTrue(merged.getDocumentId("a.txt") >= 0);
+        assertTrue(merged.getDocumentId("d.txt") >= 0);
+        for (String deleted : List.of("b.txt", "c.txt", "e.txt")) {
+            assertEquals(-1, merged.getDocumentId(deleted), deleted);
+        }
+        // only deleted documents held this term
+        assertEquals(-1, merged.getTermId("حذف"));
+        assertEquals(1, merged.getDocumentFrequency(merged.getTermId("كتب")));
+        assertEquals(1, merged.getDocumentFrequency(merged.getTermId("علم")));
+        assertEquals(2, merged.getDocumentFrequency(merged.getTermId("درس")));
+
+        // live postings keep their weights
+        assertSameWeight(first, merged, "a.txt", "كتب");
+        assertSameWeight(second, merged, "d.txt", "علم");
+    }
+
+    private static void assertSameWeight(Segment source, Segment merged, String document, String term) {
+        assertEquals(weight(source, document, term), weight(merged, document, term), document + " " + term);
+    }
+
+    private static float weight(Segment segment, String document, String term) {
+        int docId = segment.getDocumentId(document);
+        PostingsIterator postings = segment.postings(segment.getTermId(term));
+        return postings.advance(docId) == docId ? postings.weight() : 0.0f;
+    }
+
+    private static Index index(Map<String, Map<String, Integer>> termFrequencies) {
+        Map<String, Float> inverseDocumentFrequency = new HashMap<>();
+        termFrequencies.values().forEach(document ->
+                document.keySet().forEach(term -> inverseDocumentFrequency.put(term, 1.0f)));
+        return Index.fromTermFrequencies(new HashMap<>(termFrequencies), inverseDocumentFrequency);
+    }
+}
@@ -0,0 +1,196 @@
+package io.zaaim.arindexer.service;
+
+import io.zaaim.arindexer.model.Index;
+import io.zaaim.arindexer.model.LiveSegment;
+import io.zaaim.arindexer.model.MappedSegment;
+import io.zaaim.arindexer.model.PostingsIterator;
+import io.zaaim.arindexer.model.Segment;
+import io.zaaim.arindexer.storage.IndexFormat;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SegmentedIndexTest {
+
+    // high enough that no merge starts while a test runs
+    private static final TieredMergePolicy MERGE_POLICY = new TieredMergePolicy(100, 100);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void rebuildKeepsChangesMadeWhileItRuns() throws InterruptedException {
+        SegmentedIndex index = SegmentedIndex.open(directory, IndexFormat.BINARY, MERGE_POLICY, 0, 1000);
+        index.addDocuments(documents("a.txt", "b.txt"));
+        index.refresh();
+        // buffered when the rebuild starts, and stored, so the rebuild sees it as well
+        index.addDocuments(documents("c.txt"));
+
+        index.replaceAll(path -> {
+            // the rebuild has scanned storage; these changes come after
+            index.addDocuments(documents("new.txt"));
+            index.refresh();
+            index.deleteDocuments(List.of("b.txt"));
+            index.addDocuments(documents("a.txt"));
+            Index.fromTermFrequencies(documents("a.txt", "b.txt", "c.txt"), Map.of()).saveToFileAsBinary(path);
+        });
+        index.refresh();
+
+        assertEquals(List.of("a.txt", "c.txt", "new.txt"), liveNames(index));
+        index.awaitMerges();
+    }
+
+    @Test
+    void rebuildKeepsConcurrentAdds() throws Exception {
+        SegmentedIndex index = SegmentedIndex.open(directory, IndexFormat.BINARY, MERGE_POLICY, 0, 1000);
+        index.addDocuments(documents("base.txt"));
+        index.refresh();
+
+        int adds = 200;
+        // documents added before the rebuild starts are in storage, and so in what it writes
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch halfway = new CountDownLatch(1);
+        Thread writer = new Thread(() -> {
+            try {
+                started.await();
+            } catch (InterruptedException e) {
+                return;
+            }
+            for (int i = 0; i < adds; i++) {
+                index.addDocuments(documents(String.format("added-%03d.txt", i)));
+                if (i % 50 == 49) {
+                    index.refresh();
+                }
+                if (i == adds / 2) {
+                    halfway.countDown();
+                }
+            }
+        });
+        writer.start();
+        index.replaceAll(path -> {
+            started.countDown();
+            try {
+                assertTrue(halfway.await(10, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            Index.fromTermFrequencies(documents("base.txt"), Map.of()).saveToFileAsBinary(path);
+        });
+        writer.join();
+        index.refresh();
+
+        List<String> names = liveNames(index);
+        assertEquals(adds + 1, names.size());
+        for (int i = 0; i < adds; i++) {
+            assertEquals(String.format("added-%03d.txt", i), names.get(i));
+        }
+        assertEquals("base.txt", names.get(adds));
+        index.awaitMerges();
+    }
+
+    @Test
+    void flushedChangesSurviveReopening() throws InterruptedException {
+        SegmentedIndex index = SegmentedIndex.open(directory, IndexFormat.BINARY, MERGE_POLICY, 0, 1000);
+        index.addDocuments(documents("a.txt", "b.txt"));
+        index.flush();
+        index.addDocuments(documents("c.txt"));
+        index.deleteDocuments(List.of("a.txt"));
+        index.flush();
+        index.awaitMerges();
+
+        // what a restart after a crash would load
+        SegmentedIndex reopened = SegmentedIndex.open(directory, IndexFormat.BINARY, MERGE_POLICY, 0, 1000);
+        assertEquals(List.of("b.txt", "c.txt"), liveNames(reopened));
+        reopened.awaitMerges();
+    }
+
+    @Test
+    void snapshotStaysSearchableAcrossMergeAndRefresh() throws Exception {
+        TieredMergePolicy mergePolicy = new TieredMergePolicy(2, 100);
+        SegmentedIndex index = SegmentedIndex.open(directory, IndexFormat.MAPPED, mergePolicy, 0, 1000);
+        index.addDocuments(documents("a.txt"));
+        index.flush();
+        index.awaitMerges();
+
+        IndexSnapshot search = index.acquire();
+        Segment old = search.segments().get(0).segment();
+        Path oldFile = ((MappedSegment) old).getPath();
+
+        // a second segment fills the lowest tier, so both are merged into a new file
+        index.addDocuments(documents("b.txt"));
+        index.flush();
+        index.awaitMerges();
+        index.addDocuments(documents("c.txt"));
+        index.refresh();
+        try (IndexSnapshot current = index.acquire()) {
+            assertFalse(current.segments().stream().anyMatch(segment -> segment.segment() == old));
+        }
+
+        // the search still reads the version it started on
+        assertTrue(Files.exists(oldFile));
+        assertEquals(List.of("a.txt"), matches(search, "كتاب"));
+        search.close();
+        assertFalse(Files.exists(oldFile));
+        // the released segment was not unmapped, so a reader that kept it cannot crash the JVM
+        assertEquals(List.of("a.txt"), matches(search, "كتاب"));
+
+        assertEquals(List.of("a.txt", "b.txt", "c.txt"), liveNames(index));
+        index.awaitMerges();
+    }
+
+    // Live documents of a snapshot whose postings contain term
+    private static List<String> matches(IndexSnapshot snapshot, String term) {
+        List<String> names = new ArrayList<>();
+        for (LiveSegment live : snapshot.segments()) {
+            Segment segment = live.segment();
+            int termId = segment.getTermId(term);
+            if (termId < 0) {
+                continue;
+            }
+            PostingsIterator postings = segment.postings(termId);
+            for (int docId = postings.nextDoc(); docId != PostingsIterator.NO_MORE_DOCS; docId = postings.nextDoc()) {
+                if (live.isLive(docId) && postings.weight() > 0.0f) {
+                    names.add(segment.getDocumentName(docId));
+                }
+            }
+        }
+        names.sort(null);
+        return names;
+    }
+
+    // Sorted names of the live documents in the current version, with duplicates kept
+    private static List<String> liveNames(SegmentedIndex index) {
+        List<String> names = new ArrayList<>();
+        try (IndexSnapshot snapshot = index.acquire()) {
+            for (LiveSegment segment : snapshot.segments()) {
+                for (int docId = 0; docId < segment.segment().getDocumentCount(); docId++) {
+                    if (segment.isLive(docId)) {
+                        names.add(segment.segment().getDocumentName(docId));
+                    }
+                }
+            }
+        }
+        names.sort(null);
+        return names;
+    }
+
+    private static Map<String, Map<String, Integer>> documents(String... names) {
+        Map<String, Map<String, Integer>> documents = new HashMap<>();
+        for (String name : names) {
+            documents.put(name, Map.of("كتاب", 1, name, 2));
+        }
+        return documents;
+    }
+}
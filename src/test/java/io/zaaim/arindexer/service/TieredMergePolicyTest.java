@@ -0,0 +1,47 @@
+package io.zaaim.arindexer.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TieredMergePolicyTest {
+
+    private final TieredMergePolicy policy = new TieredMergePolicy(3, 10);
+
+    @Test
+    void tiersGrowByMergeFactor() {
+        assertEquals(0, policy.tier(1));
+        assertEquals(0, policy.tier(10));
+        assertEquals(1, policy.tier(11));
+        assertEquals(1, policy.tier(30));
+        assertEquals(2, policy.tier(31));
+        assertEquals(2, policy.tier(90));
+    }
+
+    @Test
+    void mergesSmallestSegmentsOfLowestFullTier() {
+        // tier 0 holds two segments, tier 1 holds four
+        List<Integer> segments = List.of(25, 4, 12, 20, 7, 30);
+        assertEquals(List.of(12, 20, 25), policy.select(segments, Integer::intValue, size -> 0));
+    }
+
+    @Test
+    void nothingToMergeBelowMergeFactor() {
+        assertEquals(List.of(), policy.select(List.of(5, 8, 20, 25, 60), Integer::intValue, size -> 0));
+    }
+
+    @Test
+    void mostlyDeletedSegmentIsRewrittenAlone() {
+        // sizes are live documents; the segment of 8 has 9 deleted ones
+        List<Integer> segments = List.of(5, 8, 20);
+        assertEquals(List.of(8), policy.select(segments, Integer::intValue, size -> size == 8 ? 9 : 1));
+    }
+
+    @Test
+    void mergeFactorBelowTwoIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new TieredMergePolicy(1, 10));
+    }
+}
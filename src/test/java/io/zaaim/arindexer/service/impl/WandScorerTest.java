@@ -0,0 +1,124 @@
+package io.zaaim.arindexer.service.impl;
+
+import io.zaaim.arindexer.model.Index;
+import io.zaaim.arindexer.model.LiveDocs;
+import io.zaaim.arindexer.model.PostingsIterator;
+import io.zaaim.arindexer.model.ScoredDocument;
+import io.zaaim.arindexer.model.Segment;
+import io.zaaim.arindexer.util.ScoreAccumulator;
+import io.zaaim.arindexer.util.TfIdfCalculator;
+import io.zaaim.arindexer.util.TopK;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class WandScorerTest {
+
+    private static final int DOCUMENTS = 2000;
+    private static final int TERMS = 300;
+    private static final int K = 10;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void matchesExhaustiveOnHeapIndex() {
+        Index index = index(new Random(1));
+        assertSameTopK(index, null, new Random(2));
+    }
+
+    @Test
+    void matchesExhaustiveOnSegmentFile() {
+        Path path = directory.resolve("segment.seg");
+        index(new Random(1)).saveToFileAsBinary(path);
+        assertSameTopK(Segment.open(path), null, new Random(3));
+    }
+
+    @Test
+    void skipsDeletedDocuments() {
+        Index index = index(new Random(1));
+        int[] deleted = new int[DOCUMENTS / 3];
+        for (int i = 0; i < deleted.length; i++) {
+            deleted[i] = i * 3;
+        }
+        assertSameTopK(index, LiveDocs.all(DOCUMENTS).withDeleted(deleted, deleted.length), new Random(4));
+    }
+
+    private static void assertSameTopK(Segment segment, LiveDocs liveDocs, Random random) {
+        for (int query = 0; query < 50; query++) {
+            int[] termIds = new int[1 + random.nextInt(4)];
+            float[] termFactors = new float[termIds.length];
+            double squaredNorm = 0;
+            for (int i = 0; i < termIds.length; i++) {
+                // mostly frequent terms, whose posting lists span several blocks
+                termIds[i] = Math.min(segment.getTermCount() - 1, (int) Math.abs(random.nextGaussian() * 20));
+                termFactors[i] = segment.getInverseDocumentFrequency(termIds[i]);
+                squaredNorm += termFactors[i] * termFactors[i];
+            }
+            float queryNorm = (float) Math.sqrt(squaredNorm);
+
+            List<ScoredDocument> expected = exhaustive(segment, liveDocs, termIds, termFactors, queryNorm);
+            for (boolean blockMax : new boolean[]{false, true}) {
+                TopK topK = new TopK(K);
+                new WandScorer(segment, liveDocs, 0, termIds, termFactors, queryNorm, blockMax).collect(topK);
+                List<ScoredDocument> actual = topK.toSortedList(segment::getDocumentName);
+                assertEquals(expected.size(), actual.size());
+                for (int i = 0; i < expected.size(); i++) {
+                    assertEquals(expected.get(i).score(), actual.get(i).score(), 1e-5f,
+                            "query " + query + ", rank " + i + ", block-max " + blockMax);
+                }
+            }
+        }
+    }
+
+    // Term-at-a-time over every posting, as SearchImpl does in exhaustive mode
+    private static List<ScoredDocument> exhaustive(Segment segment, LiveDocs liveDocs, int[] termIds,
+                                                   float[] termFactors, float queryNorm) {
+        ScoreAccumulator dotProducts = ScoreAccumulator.forDocuments(segment.getDocumentCount());
+        for (int i = 0; i < termIds.length; i++) {
+            PostingsIterator postings = segment.postings(termIds[i]);
+            for (int docId = postings.nextDoc(); docId != PostingsIterator.NO_MORE_DOCS; docId = postings.nextDoc()) {
+                dotProducts.add(docId, termFactors[i] * postings.weight());
+            }
+        }
+        TopK topK = new TopK(K);
+        for (int i = 0; i < dotProducts.touchedCount(); i++) {
+            int docId = dotProducts.touched(i);
+            if (liveDocs == null || liveDocs.isLive(docId)) {
+                float similarity = TfIdfCalculator.calculateCosineSimilarity(
+                        dotProducts.score(docId), queryNorm, segment.getDocumentNorm(docId));
+                if (similarity > 0) {
+                    topK.offer(docId, similarity);
+                }
+            }
+        }
+        return topK.toSortedList(segment::getDocumentName);
+    }
+
+    // Documents of Zipf-like term frequencies, so a few terms are in most documents and most in a few
+    private static Index index(Random random) {
+        Map<String, Map<String, Integer>> termFrequencies = new HashMap<>();
+        Map<String, Integer> documentFrequencies = new HashMap<>();
+        for (int doc = 0; doc < DOCUMENTS; doc++) {
+            Map<String, Integer> document = new HashMap<>();
+            int length = 5 + random.nextInt(60);
+            for (int i = 0; i < length; i++) {
+                int rank = (int) Math.min(TERMS - 1, Math.floor(1 / (random.nextDouble() + 1e-3)) - 1);
+                document.merge(String.format("term%03d", rank), 1, Integer::sum);
+            }
+            document.keySet().forEach(term -> documentFrequencies.merge(term, 1, Integer::sum));
+            termFrequencies.put(String.format("doc%05d.txt", doc), document);
+        }
+        Map<String, Float> inverseDocumentFrequency = new HashMap<>();
+        documentFrequencies.forEach((term, documentFrequency) ->
+                inverseDocumentFrequency.put(term, TfIdfCalculator.calculateIdf(DOCUMENTS, documentFrequency)));
+        return Index.fromTermFrequencies(termFrequencies, inverseDocumentFrequency);
+    }
+}
@@ -0,0 +1,115 @@
+package io.zaaim.arindexer.stemmer;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ArabicStemmerKhojaTest {
+
+    // stems of the stemmer as it was before its lexicons were compiled into sets and packed roots;
+    // prefixes, suffixes, patterns, weak and duplicated letters, quad roots, stopwords and the most
+    // frequent words of a sample corpus
+    private static final String[][] STEMS = {
+            {"قل", "قلل"},
+            {"رد", "ردد"},
+            {"مد", "مدي"},
+            {"شد", "شيد"},
+            {"قال", "قول"},
+            {"باع", "بيع"},
+            {"دعا", "دعا"},
+            {"سأل", "سأل"},
+            {"مؤمن", "أمن"},
+            {"رئيس", "روس"},
+            {"استعمل", "عمل"},
+            {"والكتاب", "كتب"},
+            {"بالمدرسة", "درس"},
+            {"المعلمون", "علم"},
+            {"يكتبون", "كتب"},
+            {"كاتب", "كتب"},
+            {"مكتوب", "كوب"},
+            {"استخدام", "خدم"},
+            {"ترجمة", "ترجم"},
+            {"زلزل", "زلزل"},
+            {"خوجة", "خوج"},
+            {"في", "في"},
+            {"كَتَبَ", "كَتَبَ"},
+            {"وعد", "وعد"},
+            {"رمى", "رمي"},
+            {"بقي", "بقي"},
+            {"أخذ", "أخذ"},
+            {"أكل", "أكل"},
+            {"قرأ", "قرأ"},
+            {"ملء", "ملأ"},
+            {"يد", "يود"},
+            {"مدرسة", "درس"},
+            {"والمهندسين", "هندس"},
+            {"فسيكتبونها", "فسيكتبونها"},
+            {"طمأنينة", "طمأنينة"},
+            {"مستشفى", "شفي"},
+            {"اجتماعية", "جمع"},
+            {"ابن", "أبن"},
+            {"إسلام", "سلم"},
+            {"آمن", "من"},
+            {"قبض", "قبض"},
+            {"قبضة", "قبض"},
+            {"مقبض", "قبض"},
+            {"يقبض", "قبض"},
+            {"شقر", "شقر"},
+            {"قبضهم", "قبض"},
+            {"بقبض", "قبض"},
+            {"وقبض", "قبض"},
+            {"تقبض", "قبض"},
+            {"القبض", "قبض"},
+            {"قبضها", "قبض"},
+            {"سقبض", "قبض"},
+            {"قبضات", "قبض"},
+            {"قبضون", "قبض"},
+            {"والقبض", "قبض"},
+            {"قبضين", "قبض"},
+            {"قبضي", "قبض"},
+            {"ولط", "ولط"},
+            {"شقرون", "شقر"},
+            {"والقبضين", "قبض"},
+            {"يشقر", "شقر"},
+            {"رهف", "رهف"},
+            {"شقرة", "شقر"},
+            {"وقبضة", "قبض"},
+            {"وقبضهم", "قبض"},
+            {"وقبضين", "قبض"},
+            {"مشقر", "شقر"},
+            {"بقبضهم", "قبض"},
+            {"تشقر", "شقر"},
+            {"والشقر", "شقر"},
+            {"سقبضهم", "قبض"},
+            {"تقبضي", "قبض"},
+            {"والقبضها", "قبض"},
+            {"القبضات", "قبض"},
+            {"القبضهم", "قبض"},
+            {"شقرات", "شقر"},
+            {"والقبضون", "قبض"},
+            {"مقبضين", "قبض"},
+            {"مقبضون", "قبض"},
+            {"القبضون", "قبض"}
+    };
+
+    @Test
+    void stemsAreUnchanged() {
+        Stemmer stemmer = new ArabicStemmerKhoja();
+        for (String[] stem : STEMS) {
+            assertEquals(stem[1], stemmer.stem(stem[0]), stem[0]);
+        }
+    }
+
+    @Test
+    void cachedStemsAreTheSame() {
+        CachingStemmer stemmer = new CachingStemmer(new ArabicStemmerKhoja(), 16);
+        for (int round = 0; round < 2; round++) {
+            for (String[] stem : STEMS) {
+                assertEquals(stem[1], stemmer.stem(stem[0]), stem[0]);
+            }
+        }
+        assertEquals(16, stemmer.getCapacity());
+        assertEquals(16, new CachingStemmer(new ArabicStemmerKhoja(), 31).getCapacity());
+        assertEquals(2, new CachingStemmer(new ArabicStemmerKhoja(), 2).getCapacity());
+    }
+}
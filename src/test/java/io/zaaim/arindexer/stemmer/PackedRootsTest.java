@@ -0,0 +1,64 @@
+package io.zaaim.arindexer.stemmer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PackedRootsTest {
+
+    @Test
+    void twoLetterRoots() {
+        PackedRoots roots = new PackedRoots(List.of("قل", "رد", "", "كتب"), 2);
+        assertTrue(roots.contains("قل"));
+        assertTrue(roots.contains('ر', 'د'));
+        assertFalse(roots.contains("در"));
+        // entries of another length are left out
+        assertFalse(roots.contains(""));
+        assertFalse(roots.contains("كتب"));
+    }
+
+    @Test
+    void threeLetterRootsAtTheEdgesOfTheLetterRange() {
+        PackedRoots roots = new PackedRoots(List.of("ءءء", "ييي", "كتب"), 3);
+        assertTrue(roots.contains("ءءء"));
+        assertTrue(roots.contains('ي', 'ي', 'ي'));
+        assertTrue(roots.contains('ك', 'ت', 'ب'));
+        assertFalse(roots.contains('ب', 'ت', 'ك'));
+        // diacritics and Latin letters are outside the packed range
+        assertFalse(roots.contains("كَت"));
+        assertFalse(roots.contains("abc"));
+        assertFalse(roots.contains('ك', 'ت'));
+    }
+
+    @Test
+    void fourLetterRootsMatchAHashSet() {
+        List<String> all = new ArrayList<>();
+        for (char a = 'ء'; a <= 'ي'; a += 3) {
+            for (char b = 'ء'; b <= 'ي'; b += 5) {
+                all.add("" + a + b + 'ر' + 'ج');
+            }
+        }
+        List<String> kept = new ArrayList<>();
+        for (int i = 0; i < all.size(); i += 2) {
+            kept.add(all.get(i));
+        }
+        PackedRoots roots = new PackedRoots(kept, 4);
+        Set<String> expected = Set.copyOf(kept);
+        for (String word : all) {
+            assertEquals(expected.contains(word), roots.contains(word), word);
+        }
+    }
+
+    @Test
+    void rootsOutsideTheLetterRangeAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new PackedRoots(List.of("كتa"), 3));
+        assertThrows(IllegalArgumentException.class, () -> new PackedRoots(List.of("كتبسر"), 5));
+    }
+}
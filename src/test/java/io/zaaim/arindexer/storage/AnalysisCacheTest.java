@@ -0,0 +1,54 @@
+package io.zaaim.arindexer.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class AnalysisCacheTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void trimDropsLeastRecentlyUsedEntries() throws IOException {
+        AnalysisCache cache = new AnalysisCache(directory, 1);
+        String[] hashes = new String[4];
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[i] = CorpusManifest.hash(("document " + i).getBytes());
+            cache.put(hashes[i], Map.of("كتاب", i + 1));
+            // entries written one after another, oldest first
+            Files.setLastModifiedTime(entry(hashes[i]), FileTime.fromMillis(1_000_000L * (i + 1)));
+        }
+        // a hit makes the oldest entry the most recently used
+        assertEquals(Map.of("كتاب", 1), cache.get(hashes[0]));
+        Path leftover = Files.createTempFile(entry(hashes[0]).getParent(), "x", DurableFiles.TEMPORARY_SUFFIX);
+
+        long entryBytes = Files.size(entry(hashes[0]));
+        assertEquals(3, cache.trim(2 * entryBytes));
+
+        assertNotNull(cache.get(hashes[0]));
+        assertNull(cache.get(hashes[1]));
+        assertNull(cache.get(hashes[2]));
+        assertNotNull(cache.get(hashes[3]));
+        assertFalse(Files.exists(leftover));
+        // within budget, nothing more goes
+        assertEquals(0, cache.trim(2 * entryBytes));
+    }
+
+    private Path entry(String hash) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            return files.filter(path -> path.getFileName().toString().equals(hash)).findFirst().orElseThrow();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package io.zaaim.arindexer.storage;
+
+import io.zaaim.arindexer.model.Index;
+import io.zaaim.arindexer.model.PostingsIterator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IndexConverterTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void convertsDocumentMajorSerializedIndex() throws IOException {
+        // written by the document-major Index (serialVersionUID 1) from TF-IDF weights of:
+        // a.txt {كتب: 2, درس: 1}, b.txt {كتب: 1, علم: 3}, c.txt {درس: 4, بيت: 1}
+        Path source = directory.resolve("legacy.ser");
+        try (InputStream in = IndexConverterTest.class.getResourceAsStream("document-major.ser")) {
+            Files.copy(in, source);
+        }
+
+        Path target = IndexConverter.convert(source);
+        assertEquals(directory.resolve("legacy.bin"), target);
+        Index index = Index.fromFile(target);
+
+        assertEquals(3, index.getDocumentCount());
+        assertEquals(4, index.getTermCount());
+        assertEquals(2, index.getDocumentFrequency(index.getTermId("كتب")));
+        // the idf is divided back out, leaving normalized term frequencies
+        assertEquals(2.0f / 3, weight(index, "a.txt", "كتب"), 1e-6f);
+        assertEquals(3.0f / 4, weight(index, "b.txt", "علم"), 1e-6f);
+        assertEquals(1.0f / 5, weight(index, "c.txt", "بيت"), 1e-6f);
+        // document lengths are recovered from the weights, so the index is stored as raw frequencies
+        assertEquals(3, index.getDocumentLength(index.getDocumentId("a.txt")));
+        assertEquals(4, index.getDocumentLength(index.getDocumentId("b.txt")));
+        assertEquals(5, index.getDocumentLength(index.getDocumentId("c.txt")));
+        assertEquals(Math.log(3.0 / 2), index.getInverseDocumentFrequency(index.getTermId("درس")), 1e-6);
+        assertTrue(index.getDocumentNorm(index.getDocumentId("b.txt")) > 0);
+    }
+
+    @Test
+    void convertAllLeavesBinaryFilesAlone() throws IOException {
+        Index index = Index.fromTermFrequencies(Map.of("a.txt", Map.of("كتب", 2)), Map.of("كتب", 1.0f));
+        index.saveIndexToFile(directory.resolve("serialized.ser"));
+        index.saveToFileAsXml(directory.resolve("exported.xml"));
+        Path binary = directory.resolve("current.bin");
+        Path segment = directory.resolve("segment.seg");
+        index.saveToFileAsBinary(binary);
+        index.saveToFileAsBinary(segment);
+        FileTime written = Files.getLastModifiedTime(segment);
+        Files.writeString(directory.resolve("notes.txt"), "not an index");
+
+        List<Path> converted = IndexConverter.convertAll(directory);
+
+        assertEquals(Set.of(directory.resolve("serialized.bin"), directory.resolve("exported.bin")),
+                Set.copyOf(converted));
+        assertFalse(Files.exists(directory.resolve("segment.bin")));
+        assertEquals(written, Files.getLastModifiedTime(segment));
+        assertThrows(IllegalArgumentException.class, () -> IndexConverter.convert(segment));
+        assertThrows(IllegalArgumentException.class, () -> IndexConverter.convert(binary));
+    }
+
+    private static float weight(Index index, String document, String term) {
+        int docId = index.getDocumentId(document);
+        PostingsIterator postings = index.postings(index.getTermId(term));
+        return postings.advance(docId) == docId ? postings.weight() : 0.0f;
+    }
+}
@@ -0,0 +1,85 @@
+package io.zaaim.arindexer.storage;
+
+import io.zaaim.arindexer.util.TfIdfCalculator;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PostingsCodecTest {
+
+    // several full blocks and a partial one, with gaps from 0 to a few thousand
+    private static final int POSTINGS = 3 * PostingsCodec.BLOCK_SIZE + 17;
+
+    @Test
+    void frequenciesRoundTrip() {
+        Random random = new Random(42);
+        int[] documents = documents(random, POSTINGS);
+        int documentCount = documents[documents.length - 1] + 1;
+        int[] frequencies = new int[POSTINGS];
+        int[] lengths = new int[documentCount];
+        float[] norms = new float[documentCount];
+        for (int i = 0; i < POSTINGS; i++) {
+            frequencies[i] = 1 + random.nextInt(i % 50 == 0 ? 100_000 : 20);
+        }
+        for (int docId = 0; docId < documentCount; docId++) {
+            lengths[docId] = 100_000 + random.nextInt(1000);
+            norms[docId] = 0.5f + random.nextFloat();
+        }
+
+        ByteBuffer in = wrap(PostingsCodec.encodeFrequencies(documents, frequencies, lengths, norms));
+        int[] decodedDocuments = new int[POSTINGS];
+        int[] decodedFrequencies = new int[POSTINGS];
+        PostingsCodec.decodeValues(in, 0, decodedDocuments, decodedFrequencies);
+        assertArrayEquals(documents, decodedDocuments);
+        assertArrayEquals(frequencies, decodedFrequencies);
+
+        for (int block = 0; block < PostingsCodec.blockCount(POSTINGS); block++) {
+            int from = block * PostingsCodec.BLOCK_SIZE;
+            int to = Math.min(POSTINGS, from + PostingsCodec.BLOCK_SIZE);
+            assertEquals(documents[to - 1], PostingsCodec.lastDocument(in, 0, block));
+            float bound = PostingsCodec.blockMaxImpact(in, 0, block);
+            for (int i = from; i < to; i++) {
+                float impact = TfIdfCalculator.calculateImpact(
+                        PostingsCodec.weight(frequencies[i], lengths[documents[i]]), norms[documents[i]]);
+                assertTrue(impact <= bound, "impact above its block bound at posting " + i);
+            }
+        }
+    }
+
+    @Test
+    void singlePosting() {
+        int[] documents = {12345};
+        int[] frequencies = {3};
+        int[] lengths = new int[12346];
+        lengths[12345] = 9;
+        float[] norms = new float[12346];
+        norms[12345] = 1.0f;
+
+        ByteBuffer in = wrap(PostingsCodec.encodeFrequencies(documents, frequencies, lengths, norms));
+        int[] decodedDocuments = new int[1];
+        int[] decodedFrequencies = new int[1];
+        PostingsCodec.decodeValues(in, 0, decodedDocuments, decodedFrequencies);
+        assertArrayEquals(documents, decodedDocuments);
+        assertArrayEquals(frequencies, decodedFrequencies);
+    }
+
+    private static int[] documents(Random random, int count) {
+        int[] documents = new int[count];
+        int previous = -1;
+        for (int i = 0; i < count; i++) {
+            previous += 1 + (i % 100 == 0 ? random.nextInt(5000) : random.nextInt(3));
+            documents[i] = previous;
+        }
+        return documents;
+    }
+
+    private static ByteBuffer wrap(byte[] encoded) {
+        return ByteBuffer.wrap(encoded).order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
@@ -0,0 +1,92 @@
+package io.zaaim.arindexer.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.MalformedInputException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StreamingTokenizerTest {
+
+    // decoded chars are tokenized 32K at a time, from 64K byte reads
+    private static final int CHAR_CHUNK = 32 * 1024;
+    private static final int BYTE_CHUNK = 64 * 1024;
+    // a letter outside the BMP, written as a surrogate pair
+    private static final String MATH_BOLD_A = "𝐀";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void tokensAcrossCharChunks() throws IOException {
+        // Arabic filler is two bytes a char, so the char buffer fills at the same point the byte buffer ends
+        for (int shift = -3; shift <= 3; shift++) {
+            assertSameAsString(filler("كتب ", CHAR_CHUNK + shift) + "مدرسة" + MATH_BOLD_A + "علم" + " نهاية");
+        }
+    }
+
+    @Test
+    void surrogatePairsAcrossCharChunks() throws IOException {
+        for (int shift = -3; shift <= 3; shift++) {
+            assertSameAsString(filler("ab ", CHAR_CHUNK + shift) + MATH_BOLD_A + MATH_BOLD_A + "x " + MATH_BOLD_A);
+        }
+    }
+
+    @Test
+    void multiByteCharsAcrossByteReads() throws IOException {
+        // ASCII filler reaches the end of a byte read in the middle of a two- or four-byte char
+        for (int shift = -3; shift <= 3; shift++) {
+            assertSameAsString(filler("ab ", BYTE_CHUNK + shift) + "سلام" + MATH_BOLD_A + " end");
+        }
+    }
+
+    @Test
+    void tokenLongerThanChunkIsCut() throws IOException {
+        String token = "ب".repeat(3 * CHAR_CHUNK + 5);
+        List<String> tokens = tokens(("أ " + token + " ج").getBytes(StandardCharsets.UTF_8));
+        assertEquals("أ", tokens.get(0));
+        assertEquals("ج", tokens.get(tokens.size() - 1));
+        List<String> pieces = tokens.subList(1, tokens.size() - 1);
+        assertEquals(token, String.join("", pieces));
+        pieces.forEach(piece -> assertTrue(piece.length() <= CHAR_CHUNK));
+    }
+
+    @Test
+    void malformedInputFails() {
+        byte[] content = {'a', 'b', ' ', (byte) 0xC3, ' ', 'c'};
+        assertThrows(MalformedInputException.class, () -> tokens(content));
+    }
+
+    private void assertSameAsString(String text) throws IOException {
+        List<String> expected = Arrays.asList(Tokenizer.tokenize(text));
+        byte[] content = text.getBytes(StandardCharsets.UTF_8);
+        assertEquals(expected, tokens(content));
+
+        Path file = directory.resolve("document.txt");
+        Files.write(file, content);
+        List<String> fromFile = new ArrayList<>();
+        StreamingTokenizer.utf8().tokenize(file, (chars, start, end) -> fromFile.add(chars.subSequence(start, end).toString()));
+        assertEquals(expected, fromFile);
+    }
+
+    private static List<String> tokens(byte[] content) throws IOException {
+        List<String> tokens = new ArrayList<>();
+        StreamingTokenizer.utf8().tokenize(content, (chars, start, end) -> tokens.add(chars.subSequence(start, end).toString()));
+        return tokens;
+    }
+
+    // Repeats unit up to exactly length chars
+    private static String filler(String unit, int length) {
+        return unit.repeat(length / unit.length() + 1).substring(0, length);
+    }
+}
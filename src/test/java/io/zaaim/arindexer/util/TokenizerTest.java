@@ -0,0 +1,30 @@
+package io.zaaim.arindexer.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+class TokenizerTest {
+
+    @Test
+    void punctuationSeparatesTokens() {
+        assertArrayEquals(new String[]{"قال", "نعم", "لماذا", "هذا", "end"},
+                Tokenizer.tokenize("قال، نعم؛ لماذا؟ (هذا) end."));
+    }
+
+    @Test
+    void harakatStayInsideWords() {
+        assertArrayEquals(new String[]{"كَتَبَ", "الدَّرْسَ"}, Tokenizer.tokenize("كَتَبَ الدَّرْسَ"));
+    }
+
+    @Test
+    void lettersAndDigitsOutsideTheTable() {
+        // a CJK letter and a letter outside the BMP, written as a surrogate pair
+        assertArrayEquals(new String[]{"2024", "字", "𝐀b"}, Tokenizer.tokenize(" 2024\t字\n𝐀b "));
+    }
+
+    @Test
+    void uniqueTokensKeepFirstOccurrenceOrder() {
+        assertArrayEquals(new String[]{"علم", "نور", "عمل"}, Tokenizer.tokenize("علم نور علم عمل نور", true));
+    }
+}